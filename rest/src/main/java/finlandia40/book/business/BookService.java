@@ -1,35 +1,189 @@
 package finlandia40.book.business;
 
+import finlandia40.book.data.BookFacets;
+import finlandia40.book.data.BookFilter;
 import finlandia40.book.data.BookRepository;
+import finlandia40.book.data.BookRow;
+import finlandia40.book.data.BookSort;
 import finlandia40.book.data.CompletedOfferRepository;
+import finlandia40.book.data.CompletedOfferRow;
+import finlandia40.book.data.FacetCount;
+import finlandia40.book.data.OfferLayout;
+import finlandia40.book.data.SellerMonthlySalesRepository;
 import finlandia40.book.model.Book;
-import finlandia40.book.model.CompletedOffer;
+import finlandia40.book.model.CatalogChange;
+import finlandia40.book.model.SellerMonthlySales;
+import finlandia40.book.search.BookSearchIndex;
 import finlandia40.book.web.BookController;
+import finlandia40.common.AfterCommit;
+import finlandia40.common.Cursor;
+import finlandia40.common.CursorPage;
+import finlandia40.review.data.ReviewRepository;
+import finlandia40.review.data.ReviewRow;
+import finlandia40.user.business.SellerReputationService;
 import finlandia40.user.business.UserService;
 import finlandia40.user.model.UserPostgres;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class BookService {
 
+    private static final int IN_CLAUSE_CHUNK = 1000;
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     private final BookRepository bookRepository;
     private final CompletedOfferRepository completedOfferRepository;
     private final UserService userService;
+    private final ReviewRepository reviewRepository;
+    private final BookSearchIndex searchIndex;
+    private final CatalogCache catalogCache;
+    private final CatalogChangeLog catalogChangeLog;
+    private final SellerMonthlySalesRepository sellerMonthlySalesRepository;
+    private final OfferLayout offerLayout;
+    private final SellerReputationService sellerReputationService;
 
-    public BookService(BookRepository bookRepository, CompletedOfferRepository completedOfferRepository, UserService userService) {
+    public BookService(BookRepository bookRepository, CompletedOfferRepository completedOfferRepository, ReviewRepository reviewRepository, UserService userService, BookSearchIndex searchIndex, CatalogCache catalogCache, CatalogChangeLog catalogChangeLog, SellerMonthlySalesRepository sellerMonthlySalesRepository, OfferLayout offerLayout, SellerReputationService sellerReputationService) {
         this.bookRepository = bookRepository;
         this.completedOfferRepository = completedOfferRepository;
+        this.reviewRepository = reviewRepository;
         this.userService = userService;
+        this.searchIndex = searchIndex;
+        this.catalogCache = catalogCache;
+        this.catalogChangeLog = catalogChangeLog;
+        this.sellerMonthlySalesRepository = sellerMonthlySalesRepository;
+        this.offerLayout = offerLayout;
+        this.sellerReputationService = sellerReputationService;
+    }
+
+    public List<BookRow> getAllBooks(BookFilter filter, BookSort sort, boolean withReviews) {
+        if (filter.equals(BookFilter.NONE) && sort == BookSort.OLDEST) {
+            return catalogCache.availableBooks(withReviews, () -> findAvailableBooks(filter, sort, null, null, withReviews));
+        }
+        return findAvailableBooks(filter, sort, null, null, withReviews);
+    }
+
+    /**
+     * Pages the ids first so the database can apply the limit, then loads that page only
+     * with one projection query plus one review query when the caller asked for reviews.
+     */
+    @Transactional(readOnly = true)
+    public List<BookRow> getAvailableBooksPage(BookFilter filter, BookSort sort, Cursor after, int size, boolean withReviews) {
+        return findAvailableBooks(filter, sort, after, size, withReviews);
     }
 
-    public List<Book> getAllBooks(String title) {
-        if (title == null || title.isEmpty()) {
-            return bookRepository.findAllAvailable();
+    /**
+     * Relevance pages follow the search index ranking. Matches are checked against the other filters one id chunk at a
+     * time until the page is full, so a page never depends on how many books the title matched.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<BookRow> getRelevancePage(BookFilter filter, Cursor after, int size, boolean withReviews) {
+        List<BookSearchIndex.Hit> hits = searchIndex.search(filter.title(), after);
+        List<BookSearchIndex.Hit> page = new ArrayList<>();
+        boolean more = false;
+        for (int from = 0; from < hits.size() && !more; from += IN_CLAUSE_CHUNK) {
+            List<BookSearchIndex.Hit> chunk = hits.subList(from, Math.min(hits.size(), from + IN_CLAUSE_CHUNK));
+            Set<Long> available = new HashSet<>(bookRepository.findAvailableIds(filter, BookSort.OLDEST, null, ids(chunk), null));
+            for (BookSearchIndex.Hit hit : chunk) {
+                if (!available.contains(hit.id())) {
+                    continue;
+                }
+                if (page.size() == size) {
+                    more = true;
+                    break;
+                }
+                page.add(hit);
+            }
+        }
+        return new CursorPage<>(loadInOrder(ids(page), withReviews), more ? page.get(size - 1).cursor().encode() : null);
+    }
+
+    /**
+     * Counts cover every title match; the id restriction is applied in chunks and the partial counts are summed.
+     */
+    @Transactional(readOnly = true)
+    public BookFacets getFacets(BookFilter filter) {
+        if (!filter.hasTitle()) {
+            return BookFacets.from(bookRepository.countFacets(filter, null), filter);
+        }
+        List<Long> matches = ids(searchIndex.search(filter.title(), null));
+        List<FacetCount> counts = new ArrayList<>();
+        for (int from = 0; from < matches.size(); from += IN_CLAUSE_CHUNK) {
+            counts.addAll(bookRepository.countFacets(filter, matches.subList(from, Math.min(matches.size(), from + IN_CLAUSE_CHUNK))));
         }
-        return bookRepository.findByTitleContainingIgnoreCase(title);
+        return counts.isEmpty() ? BookFacets.EMPTY : BookFacets.from(counts, filter);
+    }
+
+    @Transactional(readOnly = true)
+    public BookRow getBookDetails(Long id) {
+        return catalogCache.book(id, () -> bookRepository.findRowById(id)
+                .orElseThrow(() -> new RuntimeException("Book not found with id: " + id))
+                .withReviews(reviewRepository.findRowsByOfferIdIn(List.of(id))));
+    }
+
+    private List<BookRow> findAvailableBooks(BookFilter filter, BookSort sort, Cursor after, Integer limit, boolean withReviews) {
+        if (!filter.hasTitle()) {
+            return loadInOrder(bookRepository.findAvailableIds(filter, sort, after, null, limit), withReviews);
+        }
+        if (!sort.isKeyset()) {
+            return getRelevancePage(filter, null, limit != null ? limit : Integer.MAX_VALUE, withReviews).items();
+        }
+        List<Long> matches = ids(searchIndex.search(filter.title(), null));
+        if (matches.size() <= IN_CLAUSE_CHUNK) {
+            return matches.isEmpty() ? List.of() : loadInOrder(bookRepository.findAvailableIds(filter, sort, after, matches, limit), withReviews);
+        }
+        // each chunk yields its own first page; merging them needs the sort key, so the candidates are ordered here
+        List<Long> candidates = new ArrayList<>();
+        for (int from = 0; from < matches.size(); from += IN_CLAUSE_CHUNK) {
+            candidates.addAll(bookRepository.findAvailableIds(filter, sort, after,
+                    matches.subList(from, Math.min(matches.size(), from + IN_CLAUSE_CHUNK)), limit));
+        }
+        List<BookRow> rows = loadInOrder(candidates, false).stream()
+                .sorted(sort.comparator())
+                .limit(limit != null ? limit : candidates.size())
+                .toList();
+        return withReviews ? withReviews(rows) : rows;
+    }
+
+    private static List<Long> ids(List<BookSearchIndex.Hit> hits) {
+        return hits.stream().map(BookSearchIndex.Hit::id).toList();
+    }
+
+    private List<BookRow> loadInOrder(List<Long> ids, boolean withReviews) {
+        Map<Long, BookRow> rowsById = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK) {
+            bookRepository.findRowsByIdIn(ids.subList(from, Math.min(ids.size(), from + IN_CLAUSE_CHUNK)))
+                    .forEach(row -> rowsById.put(row.id(), row));
+        }
+        List<BookRow> rows = ids.stream()
+                .map(rowsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return withReviews ? withReviews(rows) : rows;
+    }
+
+    private List<BookRow> withReviews(List<BookRow> rows) {
+        Map<Long, List<ReviewRow>> reviewsByOffer = new HashMap<>();
+        for (int from = 0; from < rows.size(); from += IN_CLAUSE_CHUNK) {
+            List<Long> chunk = rows.subList(from, Math.min(rows.size(), from + IN_CLAUSE_CHUNK)).stream().map(BookRow::id).toList();
+            reviewRepository.findRowsByOfferIdIn(chunk).forEach(review ->
+                    reviewsByOffer.computeIfAbsent(review.offerId(), key -> new ArrayList<>()).add(review));
+        }
+        return rows.stream()
+                .map(row -> row.withReviews(reviewsByOffer.getOrDefault(row.id(), List.of())))
+                .toList();
     }
 
     public Book getBookById(Long id) {
@@ -37,6 +191,7 @@ public class BookService {
                 .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
     }
 
+    @Transactional
     public Book createBook(BookController.CreateBookRequest request, String sellerLogin) {
         UserPostgres seller = userService.loadUserByLogin(sellerLogin);
         Book book = new Book(
@@ -47,7 +202,13 @@ public class BookService {
                 request.imageUrl(),
                 seller
         );
-        return bookRepository.save(book);
+        Book saved = bookRepository.save(book);
+        catalogChangeLog.record(saved.getId(), CatalogChange.Type.CREATED);
+        AfterCommit.run(() -> {
+            searchIndex.index(saved.getId(), saved.getTitle(), saved.getAuthor());
+            catalogCache.bookAdded(saved.getId());
+        });
+        return saved;
     }
 
     @Transactional
@@ -56,53 +217,90 @@ public class BookService {
         if (book.getImageUrl() == null || book.getImageUrl().isEmpty()) {
             book.setImageUrl(imageUrl);
             bookRepository.save(book);
+            catalogChangeLog.record(id, CatalogChange.Type.UPDATED);
+            AfterCommit.run(() -> catalogCache.bookChanged(id));
         }
     }
 
     @Transactional
-    public Book buyBook(Long bookId, String buyerLogin) {
-        Book book = getBookById(bookId);
+    public void buyBook(Long bookId, String buyerLogin) {
         UserPostgres buyer = userService.loadUserByLogin(buyerLogin);
 
-        if (book.getSeller().getLogin().equals(buyerLogin)) {
-            throw new RuntimeException("You cannot buy your own book");
-        }
-        
-        if (book.isSold() || book.getPendingBuyer() != null) {
+        if (offerLayout.reserve(bookId, buyer.getId(), LocalDateTime.now()) == 0) {
+            BookRow book = bookRepository.findRowById(bookId)
+                    .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
+            if (buyerLogin.equals(book.sellerLogin())) {
+                throw new RuntimeException("You cannot buy your own book");
+            }
             throw new RuntimeException("Book is already sold or has a pending buyer");
         }
 
-        book.setPendingBuyer(buyer);
-        return bookRepository.save(book);
+        catalogChangeLog.record(bookId, CatalogChange.Type.RESERVED);
+        AfterCommit.run(() -> {
+            searchIndex.remove(bookId);
+            catalogCache.bookChanged(bookId);
+        });
     }
 
     @Transactional
-    public CompletedOffer confirmSale(Long bookId, String sellerLogin) {
-        Book book = getBookById(bookId);
-        
-        if (!book.getSeller().getLogin().equals(sellerLogin)) {
-            throw new RuntimeException("Only the seller can confirm the sale");
-        }
-        
-        if (book.getPendingBuyer() == null) {
+    public CompletedOfferRow confirmSale(Long bookId, String sellerLogin) {
+        LocalDateTime completedAt = LocalDateTime.now();
+        Optional<OfferLayout.SaleCompletion> completion = offerLayout.completeSale(bookId, sellerLogin, completedAt);
+        if (completion.isEmpty()) {
+            BookRow book = bookRepository.findRowById(bookId)
+                    .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
+            if (!sellerLogin.equals(book.sellerLogin())) {
+                throw new RuntimeException("Only the seller can confirm the sale");
+            }
             throw new RuntimeException("No pending buyer for this book");
         }
+        offerLayout.recordMonthlySale(bookId);
+        LocalDateTime reservedAt = completion.get().reservedAt();
+        sellerReputationService.recordSale(bookId, reservedAt != null ? Duration.between(reservedAt, completedAt) : null);
+
+        catalogChangeLog.record(bookId, CatalogChange.Type.REMOVED);
+        AfterCommit.run(() -> {
+            searchIndex.remove(bookId);
+            catalogCache.bookChanged(bookId);
+        });
+        return completedOfferRepository.findRowById(bookId).orElseThrow();
+    }
+
+    public CatalogChangeLog.CatalogDelta getChangesSince(Cursor since, int size) {
+        return catalogChangeLog.changesSince(since, size);
+    }
+
+    public List<BookRow> getPendingSales(String sellerLogin) {
+        return bookRepository.findPendingSaleRows(sellerLogin);
+    }
+
+    public List<CompletedOfferRow> getPurchaseHistory(String login) {
+        return completedOfferRepository.findRowsByBuyerLogin(login);
+    }
 
-        CompletedOffer completedOffer = CompletedOffer.fromBook(book, book.getPendingBuyer());
-        
-        bookRepository.delete(book);
-        return completedOfferRepository.save(completedOffer);
+    public List<CompletedOfferRow> getSalesHistory(String login) {
+        return completedOfferRepository.findRowsBySellerLogin(login);
     }
 
-    public List<Book> getPendingSales(String sellerLogin) {
-        return bookRepository.findPendingSales(sellerLogin);
+    /**
+     * Keyset page of purchases, newest first; {@code before} is the last row of the previous page.
+     */
+    public List<CompletedOfferRow> getPurchaseHistoryPage(String login, Cursor before, int limit) {
+        Long buyerId = userService.loadUserByLogin(login).getId();
+        return before == null
+                ? completedOfferRepository.findRowsByBuyerIdBefore(buyerId, HISTORY_START, Long.MAX_VALUE, PageRequest.ofSize(limit))
+                : completedOfferRepository.findRowsByBuyerIdBefore(buyerId, before.dateTimeKey(), before.id(), PageRequest.ofSize(limit));
     }
 
-    public List<CompletedOffer> getPurchaseHistory(String login) {
-        return completedOfferRepository.findAllByBuyerLogin(login);
+    public List<CompletedOfferRow> getSalesHistoryPage(String login, Cursor before, int limit) {
+        Long sellerId = userService.loadUserByLogin(login).getId();
+        return before == null
+                ? completedOfferRepository.findRowsBySellerIdBefore(sellerId, HISTORY_START, Long.MAX_VALUE, PageRequest.ofSize(limit))
+                : completedOfferRepository.findRowsBySellerIdBefore(sellerId, before.dateTimeKey(), before.id(), PageRequest.ofSize(limit));
     }
 
-    public List<CompletedOffer> getSalesHistory(String login) {
-        return completedOfferRepository.findAllBySellerLogin(login);
+    public List<SellerMonthlySales> getMonthlySales(String login, int months) {
+        Long sellerId = userService.loadUserByLogin(login).getId();
+        return sellerMonthlySalesRepository.findLatestBySellerId(sellerId, PageRequest.ofSize(months));
     }
 }
@@ -0,0 +1,10 @@
+package finlandia40.book.business;
+
+/**
+ * Carries catalog cache invalidations to the other nodes. Invalidations from other nodes are published as application
+ * events, which {@link CatalogCache} listens for.
+ */
+public interface CatalogBroadcast {
+
+    void publish(CatalogInvalidation invalidation);
+}
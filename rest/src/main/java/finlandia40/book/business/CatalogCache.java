@@ -0,0 +1,194 @@
+package finlandia40.book.business;
+
+import finlandia40.book.data.BookRow;
+import finlandia40.book.data.CatalogChangeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the unfiltered available-books snapshot and single-book lookups behind a monotonically increasing catalog version.
+ * Every committed catalog write takes the next version from a database sequence and is broadcast to the other nodes;
+ * single-book entries are evicted only for the book that changed.
+ * A load that overlaps a write is returned but not stored, so a stale read never outlives the write that raced it.
+ * Entries older than {@code catalog.cache.max-age-ms} are reloaded anyway, which bounds the damage of a lost broadcast.
+ */
+@Component
+public class CatalogCache {
+
+    private static final long UNKNOWN = -1;
+
+    private final AtomicLong version = new AtomicLong(UNKNOWN);
+
+    private final CatalogChangeRepository catalogChangeRepository;
+    private final CatalogBroadcast broadcast;
+    private final Duration maxAge;
+    private final Map<Boolean, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<Long, Entry> books;
+
+    private final Counter snapshotHits;
+    private final Counter snapshotMisses;
+    private final Counter bookHits;
+    private final Counter bookMisses;
+    private final Counter sizeEvictions;
+    private final Counter invalidations;
+
+    public CatalogCache(CatalogChangeRepository catalogChangeRepository,
+                        CatalogBroadcast broadcast,
+                        MeterRegistry meterRegistry,
+                        @Value("${catalog.cache.max-books:1000}") int maxBooks,
+                        @Value("${catalog.cache.max-age-ms:300000}") long maxAgeMs) {
+        this.catalogChangeRepository = catalogChangeRepository;
+        this.broadcast = broadcast;
+        this.maxAge = Duration.ofMillis(maxAgeMs);
+        this.snapshotHits = requests(meterRegistry, "snapshot", "hit");
+        this.snapshotMisses = requests(meterRegistry, "snapshot", "miss");
+        this.bookHits = requests(meterRegistry, "book", "hit");
+        this.bookMisses = requests(meterRegistry, "book", "miss");
+        this.sizeEvictions = Counter.builder("catalog.cache.evictions").tag("cause", "size").register(meterRegistry);
+        this.invalidations = Counter.builder("catalog.cache.evictions").tag("cause", "invalidation").register(meterRegistry);
+        this.books = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > maxBooks) {
+                    sizeEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Gauge.builder("catalog.cache.size", this, cache -> cache.cachedBookCount()).register(meterRegistry);
+        Gauge.builder("catalog.version", version, AtomicLong::get).register(meterRegistry);
+    }
+
+    /**
+     * The first read after startup takes a fresh version: data.sql may have reseeded the catalog.
+     */
+    public long version() {
+        long current = version.get();
+        if (current == UNKNOWN) {
+            version.compareAndSet(UNKNOWN, catalogChangeRepository.nextCatalogVersion());
+            current = version.get();
+        }
+        return current;
+    }
+
+    public List<BookRow> availableBooks(boolean withReviews, Supplier<List<BookRow>> loader) {
+        long current = version();
+        Snapshot snapshot = snapshots.get(withReviews);
+        if (snapshot != null && snapshot.version() == current && isFresh(snapshot.loadedAt())) {
+            snapshotHits.increment();
+            return snapshot.books();
+        }
+        snapshotMisses.increment();
+        Instant loadedAt = Instant.now();
+        List<BookRow> loaded = List.copyOf(loader.get());
+        if (version.get() == current) {
+            snapshots.put(withReviews, new Snapshot(current, loaded, loadedAt));
+        }
+        return loaded;
+    }
+
+    public BookRow book(Long id, Supplier<BookRow> loader) {
+        long current = version();
+        synchronized (books) {
+            Entry cached = books.get(id);
+            if (cached != null && isFresh(cached.loadedAt())) {
+                bookHits.increment();
+                return cached.book();
+            }
+        }
+        bookMisses.increment();
+        Instant loadedAt = Instant.now();
+        BookRow loaded = loader.get();
+        synchronized (books) {
+            if (version.get() == current) {
+                books.put(id, new Entry(loaded, loadedAt));
+            }
+        }
+        return loaded;
+    }
+
+    public void catalogChanged() {
+        publish(CatalogInvalidation.Scope.CATALOG, null);
+    }
+
+    public void bookAdded(Long id) {
+        publish(CatalogInvalidation.Scope.CATALOG, id);
+    }
+
+    public void bookChanged(Long id) {
+        publish(CatalogInvalidation.Scope.BOOK, id);
+    }
+
+    public void sellerChanged() {
+        publish(CatalogInvalidation.Scope.SELLER, null);
+    }
+
+    private void publish(CatalogInvalidation.Scope scope, Long bookId) {
+        CatalogInvalidation invalidation = new CatalogInvalidation(catalogChangeRepository.nextCatalogVersion(), scope, bookId);
+        apply(invalidation);
+        broadcast.publish(invalidation);
+    }
+
+    /**
+     * Local writes and, through {@link CatalogBroadcast}, writes on other nodes.
+     */
+    @EventListener
+    public void apply(CatalogInvalidation invalidation) {
+        synchronized (books) {
+            version.accumulateAndGet(invalidation.version(), Math::max);
+            switch (invalidation.scope()) {
+                case BOOK -> {
+                    if (books.remove(invalidation.bookId()) != null) {
+                        invalidations.increment();
+                    }
+                }
+                case SELLER, ALL -> {
+                    if (!books.isEmpty()) {
+                        invalidations.increment(books.size());
+                        books.clear();
+                    }
+                }
+                case CATALOG -> {
+                }
+            }
+        }
+        snapshots.clear();
+    }
+
+    private boolean isFresh(Instant loadedAt) {
+        return loadedAt.plus(maxAge).isAfter(Instant.now());
+    }
+
+    private int cachedBookCount() {
+        synchronized (books) {
+            return books.size();
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String cache, String result) {
+        return Counter.builder("catalog.cache.requests")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Snapshot(long version, List<BookRow> books, Instant loadedAt) {
+    }
+
+    private record Entry(BookRow book, Instant loadedAt) {
+    }
+}
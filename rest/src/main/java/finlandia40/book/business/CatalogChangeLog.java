@@ -0,0 +1,92 @@
+package finlandia40.book.business;
+
+import finlandia40.book.data.BookRepository;
+import finlandia40.book.data.BookRow;
+import finlandia40.book.data.CatalogChangeRepository;
+import finlandia40.book.model.CatalogChange;
+import finlandia40.common.Cursor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Records listing changes in the caller's transaction and serves them back as deltas, so sync cost follows churn, not catalog size.
+ * <p>
+ * Ids are handed out at insert time but become visible at commit, so a change with a lower id can appear after a higher
+ * one. Deltas are therefore ordered by the writing transaction id and only include changes of transactions older than
+ * the oldest one still running: those are all committed, and nothing can appear before them any more. A long-running
+ * transaction delays deltas but never makes a client skip a change.
+ */
+@Component
+public class CatalogChangeLog {
+
+    private final CatalogChangeRepository catalogChangeRepository;
+    private final BookRepository bookRepository;
+
+    public CatalogChangeLog(CatalogChangeRepository catalogChangeRepository, BookRepository bookRepository) {
+        this.catalogChangeRepository = catalogChangeRepository;
+        this.bookRepository = bookRepository;
+    }
+
+    public void record(Long offerId, CatalogChange.Type type) {
+        catalogChangeRepository.save(new CatalogChange(offerId, type, LocalDateTime.now()));
+    }
+
+    public void recordAll(Collection<Long> offerIds, CatalogChange.Type type) {
+        catalogChangeRepository.insertAll(offerIds, type.name(), LocalDateTime.now());
+    }
+
+    /**
+     * Changes after {@code since}, collapsed to the latest change per listing. Without a position only the current
+     * position is returned; clients take it before their initial full load, which sees every change before it.
+     */
+    @Transactional(readOnly = true)
+    public CatalogDelta changesSince(Cursor since, int size) {
+        long horizon = catalogChangeRepository.findSettledHorizon();
+        if (since == null) {
+            return new CatalogDelta(List.of(), Cursor.of(horizon - 1, Long.MAX_VALUE), false);
+        }
+        List<CatalogChange> changes = catalogChangeRepository.findSettledAfter(
+                since.longKey(), since.id(), horizon, PageRequest.ofSize(size + 1));
+        boolean hasMore = changes.size() > size;
+        if (hasMore) {
+            changes = changes.subList(0, size);
+        }
+        if (changes.isEmpty()) {
+            return new CatalogDelta(List.of(), since, false);
+        }
+
+        Map<Long, CatalogChange.Type> latestByOffer = new LinkedHashMap<>();
+        changes.forEach(change -> latestByOffer.put(change.getOfferId(), change.getType()));
+        List<Long> liveIds = latestByOffer.entrySet().stream()
+                .filter(entry -> entry.getValue() != CatalogChange.Type.REMOVED)
+                .map(Map.Entry::getKey)
+                .toList();
+        Map<Long, BookRow> rows = liveIds.isEmpty() ? Map.of() : bookRepository.findRowsByIdIn(liveIds).stream()
+                .collect(Collectors.toMap(BookRow::id, Function.identity()));
+
+        List<Entry> entries = latestByOffer.entrySet().stream()
+                .map(entry -> {
+                    BookRow row = rows.get(entry.getKey());
+                    CatalogChange.Type type = row != null ? entry.getValue() : CatalogChange.Type.REMOVED;
+                    return new Entry(entry.getKey(), type, row);
+                })
+                .toList();
+        CatalogChange last = changes.get(changes.size() - 1);
+        return new CatalogDelta(entries, Cursor.of(last.getTxid(), last.getId()), hasMore);
+    }
+
+    public record CatalogDelta(List<Entry> entries, Cursor position, boolean hasMore) {
+    }
+
+    public record Entry(Long offerId, CatalogChange.Type type, BookRow book) {
+    }
+}
@@ -0,0 +1,129 @@
+package finlandia40.book.business;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import finlandia40.book.data.BookRepository;
+import finlandia40.book.data.BookRow;
+import finlandia40.book.data.CompletedOfferRepository;
+import finlandia40.book.data.CompletedOfferRow;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Streams full dumps straight from a server-side cursor to the response. Rows are DTO projections, so nothing is attached
+ * to the persistence context, and at most one JDBC fetch batch is held in memory regardless of export size.
+ */
+@Service
+public class CatalogExporter {
+
+    private static final List<Column<BookRow>> BOOK_COLUMNS = List.of(
+            new Column<>("id", BookRow::id),
+            new Column<>("title", BookRow::title),
+            new Column<>("author", BookRow::author),
+            new Column<>("condition", BookRow::condition),
+            new Column<>("price", BookRow::price),
+            new Column<>("imageUrl", BookRow::imageUrl),
+            new Column<>("sellerLogin", BookRow::sellerLogin),
+            new Column<>("reviewCount", book -> book.rating().getReviewCount()),
+            new Column<>("averageRating", book -> book.rating().getAverage())
+    );
+
+    private static final List<Column<CompletedOfferRow>> SALE_COLUMNS = List.of(
+            new Column<>("id", CompletedOfferRow::id),
+            new Column<>("title", CompletedOfferRow::title),
+            new Column<>("author", CompletedOfferRow::author),
+            new Column<>("price", CompletedOfferRow::price),
+            new Column<>("sellerLogin", CompletedOfferRow::sellerLogin),
+            new Column<>("buyerLogin", CompletedOfferRow::buyerLogin),
+            new Column<>("completionDate", CompletedOfferRow::completionDate)
+    );
+
+    private final BookRepository bookRepository;
+    private final CompletedOfferRepository completedOfferRepository;
+    private final ObjectMapper objectMapper;
+
+    public CatalogExporter(BookRepository bookRepository, CompletedOfferRepository completedOfferRepository, ObjectMapper objectMapper) {
+        this.bookRepository = bookRepository;
+        this.completedOfferRepository = completedOfferRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(readOnly = true)
+    public void exportAvailableBooks(ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<BookRow> rows = bookRepository.streamAvailableRows()) {
+            write(rows, BOOK_COLUMNS, format, out);
+        }
+    }
+
+    /**
+     * Sales of one seller only; buyer logins of other sellers' sales are not theirs to see.
+     */
+    @Transactional(readOnly = true)
+    public void exportSales(String sellerLogin, ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<CompletedOfferRow> rows = completedOfferRepository.streamRowsBySellerLogin(sellerLogin)) {
+            write(rows, SALE_COLUMNS, format, out);
+        }
+    }
+
+    private <T> void write(Stream<T> rows, List<Column<T>> columns, ExportFormat format, OutputStream out) throws IOException {
+        switch (format) {
+            case NDJSON -> writeNdjson(rows, columns, out);
+            case CSV -> writeCsv(rows, columns, out);
+        }
+    }
+
+    private <T> void writeNdjson(Stream<T> rows, List<Column<T>> columns, OutputStream out) throws IOException {
+        SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(out);
+        Iterator<T> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            T row = iterator.next();
+            Map<String, Object> line = new LinkedHashMap<>();
+            columns.forEach(column -> line.put(column.name(), column.value().apply(row)));
+            writer.write(line);
+        }
+        writer.flush();
+    }
+
+    private <T> void writeCsv(Stream<T> rows, List<Column<T>> columns, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(columns.stream().map(Column::name).collect(Collectors.joining(",")));
+        writer.write("\r\n");
+        Iterator<T> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            T row = iterator.next();
+            writer.write(columns.stream()
+                    .map(column -> csvValue(column.value().apply(row)))
+                    .collect(Collectors.joining(",")));
+            writer.write("\r\n");
+        }
+        writer.flush();
+    }
+
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    private record Column<T>(String name, Function<T, Object> value) {
+    }
+}
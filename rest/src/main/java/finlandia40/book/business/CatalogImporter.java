@@ -0,0 +1,283 @@
+package finlandia40.book.business;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import finlandia40.book.data.BookRepository;
+import finlandia40.book.model.Book;
+import finlandia40.book.model.CatalogChange;
+import finlandia40.book.search.BookSearchIndex;
+import finlandia40.book.web.BookController;
+import finlandia40.common.AfterCommit;
+import finlandia40.user.business.UserService;
+import finlandia40.user.model.UserPostgres;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Imports listings from a streamed JSON array, NDJSON or CSV body. Rows are validated as they are read and inserted in
+ * chunks, each in its own transaction, so the request never holds more than one chunk of entities and a bad chunk only
+ * fails its own rows. Offer ids come from a pooled sequence, which lets Hibernate batch the offer and book inserts.
+ * <p>
+ * Under open-in-view every chunk shares the request's persistence context, so it is cleared once a chunk has committed;
+ * otherwise every imported entity would stay managed, and dirty-checked, until the response is written.
+ */
+@Service
+public class CatalogImporter {
+
+    private final BookRepository bookRepository;
+    private final CatalogChangeLog catalogChangeLog;
+    private final BookSearchIndex searchIndex;
+    private final CatalogCache catalogCache;
+    private final UserService userService;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public CatalogImporter(BookRepository bookRepository,
+                           CatalogChangeLog catalogChangeLog,
+                           BookSearchIndex searchIndex,
+                           CatalogCache catalogCache,
+                           UserService userService,
+                           TransactionTemplate transactionTemplate,
+                           EntityManager entityManager,
+                           ObjectMapper objectMapper,
+                           @Value("${catalog.import.chunk-size:500}") int chunkSize) {
+        this.bookRepository = bookRepository;
+        this.catalogChangeLog = catalogChangeLog;
+        this.searchIndex = searchIndex;
+        this.catalogCache = catalogCache;
+        this.userService = userService;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportResult importJson(InputStream in, String sellerLogin) throws IOException {
+        Chunker chunker = new Chunker(userService.loadUserByLogin(sellerLogin));
+        try (MappingIterator<BookController.CreateBookRequest> rows =
+                     objectMapper.readerFor(BookController.CreateBookRequest.class).readValues(in)) {
+            while (rows.hasNextValue()) {
+                try {
+                    chunker.add(rows.nextValue());
+                } catch (JsonMappingException e) {
+                    chunker.reject("Invalid row");
+                }
+            }
+        } catch (JsonParseException e) {
+            chunker.reject("Malformed JSON, import stopped");
+        }
+        return chunker.finish();
+    }
+
+    public ImportResult importCsv(InputStream in, String sellerLogin) throws IOException {
+        Chunker chunker = new Chunker(userService.loadUserByLogin(sellerLogin));
+        try (Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            List<String> header = readCsvRecord(reader);
+            if (header == null) {
+                return chunker.finish();
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+            }
+            for (String required : List.of("title", "author", "condition", "price")) {
+                if (!columns.containsKey(required)) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing CSV column: " + required);
+                }
+            }
+            List<String> record;
+            while ((record = readCsvRecord(reader)) != null) {
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                chunker.add(toRequest(record, columns));
+            }
+        }
+        return chunker.finish();
+    }
+
+    private static BookController.CreateBookRequest toRequest(List<String> record, Map<String, Integer> columns) {
+        String price = field(record, columns, "price");
+        Double parsedPrice;
+        try {
+            parsedPrice = price == null || price.isBlank() ? null : Double.valueOf(price.trim());
+        } catch (NumberFormatException e) {
+            parsedPrice = Double.NaN;
+        }
+        return new BookController.CreateBookRequest(
+                field(record, columns, "title"),
+                field(record, columns, "author"),
+                field(record, columns, "condition"),
+                parsedPrice,
+                field(record, columns, "imageurl")
+        );
+    }
+
+    private static String field(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= record.size() ? null : record.get(index);
+    }
+
+    /**
+     * Reads one RFC 4180 record: quoted fields may contain separators, doubled quotes and line breaks.
+     * Returns null at end of input.
+     */
+    private static List<String> readCsvRecord(Reader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String validate(BookController.CreateBookRequest request) {
+        if (request == null) {
+            return "Empty row";
+        }
+        if (request.title() == null || request.title().isBlank()) {
+            return "Title is required";
+        }
+        if (request.author() == null || request.author().isBlank()) {
+            return "Author is required";
+        }
+        if (request.condition() == null || request.condition().isBlank()) {
+            return "Condition is required";
+        }
+        if (request.price() == null || !Double.isFinite(request.price()) || request.price() < 0) {
+            return "Price must be a non-negative number";
+        }
+        return null;
+    }
+
+    private List<Long> insertChunk(List<Book> books) {
+        try {
+            return transactionTemplate.execute(status -> {
+                List<Book> saved = bookRepository.saveAll(books);
+                bookRepository.flush();
+                List<Long> ids = saved.stream().map(Book::getId).toList();
+                catalogChangeLog.recordAll(ids, CatalogChange.Type.CREATED);
+                AfterCommit.run(() -> {
+                    saved.forEach(book -> searchIndex.index(book.getId(), book.getTitle(), book.getAuthor()));
+                    catalogCache.catalogChanged();
+                });
+                return ids;
+            });
+        } finally {
+            entityManager.clear();
+        }
+    }
+
+    private class Chunker {
+
+        private final UserPostgres seller;
+        private final List<RowResult> results = new ArrayList<>();
+        private final List<Book> pending = new ArrayList<>();
+        private final List<Integer> pendingRows = new ArrayList<>();
+        private int row;
+        private int created;
+
+        Chunker(UserPostgres seller) {
+            this.seller = seller;
+        }
+
+        void add(BookController.CreateBookRequest request) {
+            String error = validate(request);
+            if (error != null) {
+                reject(error);
+                return;
+            }
+            row++;
+            pending.add(new Book(request.title().trim(), request.author().trim(), request.condition().trim(),
+                    request.price(), request.imageUrl(), seller));
+            pendingRows.add(row);
+            if (pending.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void reject(String error) {
+            row++;
+            results.add(new RowResult(row, null, error));
+        }
+
+        ImportResult finish() {
+            flush();
+            results.sort(Comparator.comparingInt(RowResult::row));
+            return new ImportResult(created, results.size() - created, results);
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                List<Long> ids = insertChunk(pending);
+                for (int i = 0; i < ids.size(); i++) {
+                    results.add(new RowResult(pendingRows.get(i), ids.get(i), null));
+                }
+                created += ids.size();
+            } catch (RuntimeException e) {
+                pendingRows.forEach(failed -> results.add(new RowResult(failed, null, "Insert failed")));
+            }
+            pending.clear();
+            pendingRows.clear();
+        }
+    }
+
+    public record RowResult(int row, Long id, String error) {
+    }
+
+    public record ImportResult(int created, int failed, List<RowResult> rows) {
+    }
+}
@@ -0,0 +1,24 @@
+package finlandia40.book.business;
+
+/**
+ * A committed catalog write as far as cached reads are concerned. {@code version} comes from a database sequence, so every
+ * node numbers catalog states the same way.
+ */
+public record CatalogInvalidation(long version, Scope scope, Long bookId) {
+
+    public enum Scope {
+        /**
+         * Listings were added: only the snapshots are affected. {@code bookId} names the listing when there is just one.
+         */
+        CATALOG,
+        BOOK,
+        /**
+         * Seller-level data such as the seller rating appears on every listing of that seller.
+         */
+        SELLER,
+        /**
+         * Invalidations may have been missed, everything goes.
+         */
+        ALL
+    }
+}
@@ -0,0 +1,16 @@
+package finlandia40.book.business;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single node: there is nobody else to tell.
+ */
+@Component
+@Profile("!chat-cluster")
+public class LocalCatalogBroadcast implements CatalogBroadcast {
+
+    @Override
+    public void publish(CatalogInvalidation invalidation) {
+    }
+}
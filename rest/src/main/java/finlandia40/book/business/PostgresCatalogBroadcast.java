@@ -0,0 +1,78 @@
+package finlandia40.book.business;
+
+import finlandia40.book.data.CatalogChangeRepository;
+import finlandia40.book.search.BookSearchIndex;
+import finlandia40.common.PostgresNotifications;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Several nodes: invalidations go out on one channel every node listens on. A node skips its own, it applied them
+ * before sending. After a listener reconnect the invalidations sent meanwhile are unknown, so everything is dropped.
+ * <p>
+ * The search index is per node as well and only the writing node updates its own, so a received invalidation also
+ * re-reads the book it names into the local index; one that names no book (a bulk import) rebuilds the index.
+ */
+@Component
+@Profile("chat-cluster")
+public class PostgresCatalogBroadcast implements CatalogBroadcast, PostgresNotifications.Handler {
+
+    private static final String CHANNEL = "catalog_invalidation";
+
+    private final PostgresNotifications notifications;
+    private final CatalogChangeRepository catalogChangeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BookSearchIndex searchIndex;
+
+    public PostgresCatalogBroadcast(PostgresNotifications notifications,
+                                    CatalogChangeRepository catalogChangeRepository,
+                                    ApplicationEventPublisher eventPublisher,
+                                    BookSearchIndex searchIndex) {
+        this.notifications = notifications;
+        this.catalogChangeRepository = catalogChangeRepository;
+        this.eventPublisher = eventPublisher;
+        this.searchIndex = searchIndex;
+        notifications.listen(CHANNEL, this);
+    }
+
+    /**
+     * Payload: origin node, version, scope and book id, separated by spaces.
+     */
+    @Override
+    public void publish(CatalogInvalidation invalidation) {
+        notifications.send(CHANNEL, notifications.nodeId() + " " + invalidation.version() + " "
+                + invalidation.scope() + " " + (invalidation.bookId() != null ? invalidation.bookId() : ""));
+    }
+
+    @Override
+    public void notified(String payload) {
+        String[] parts = payload.split(" ", -1);
+        if (parts.length != 4 || parts[0].equals(notifications.nodeId())) {
+            return;
+        }
+        CatalogInvalidation invalidation = new CatalogInvalidation(Long.parseLong(parts[1]),
+                CatalogInvalidation.Scope.valueOf(parts[2]), parts[3].isEmpty() ? null : Long.valueOf(parts[3]));
+        switch (invalidation.scope()) {
+            case BOOK -> searchIndex.refresh(invalidation.bookId());
+            case CATALOG -> {
+                if (invalidation.bookId() != null) {
+                    searchIndex.refresh(invalidation.bookId());
+                } else {
+                    searchIndex.rebuild();
+                }
+            }
+            case ALL -> searchIndex.rebuild();
+            case SELLER -> {
+            }
+        }
+        eventPublisher.publishEvent(invalidation);
+    }
+
+    @Override
+    public void connected() {
+        searchIndex.rebuild();
+        eventPublisher.publishEvent(new CatalogInvalidation(catalogChangeRepository.nextCatalogVersion(),
+                CatalogInvalidation.Scope.ALL, null));
+    }
+}
@@ -0,0 +1,87 @@
+package finlandia40.book.business;
+
+import finlandia40.book.data.BookRepository;
+import finlandia40.book.data.BookRow;
+import finlandia40.book.data.OfferLayout;
+import finlandia40.book.model.CatalogChange;
+import finlandia40.book.search.BookSearchIndex;
+import finlandia40.common.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Puts books back on sale when the seller has not confirmed a reservation within the TTL.
+ * Each batch runs in its own short transaction, so a large backlog never holds row locks for a whole sweep.
+ */
+@Component
+public class ReservationExpiry {
+
+    private final BookRepository bookRepository;
+    private final OfferLayout offerLayout;
+    private final CatalogChangeLog catalogChangeLog;
+    private final BookSearchIndex searchIndex;
+    private final CatalogCache catalogCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter released;
+    private final Duration ttl;
+    private final int batchSize;
+    private final int maxBatches;
+
+    public ReservationExpiry(BookRepository bookRepository,
+                             OfferLayout offerLayout,
+                             CatalogChangeLog catalogChangeLog,
+                             BookSearchIndex searchIndex,
+                             CatalogCache catalogCache,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${reservation.ttl-hours:48}") long ttlHours,
+                             @Value("${reservation.expiry.batch-size:200}") int batchSize,
+                             @Value("${reservation.expiry.max-batches:50}") int maxBatches) {
+        this.bookRepository = bookRepository;
+        this.offerLayout = offerLayout;
+        this.catalogChangeLog = catalogChangeLog;
+        this.searchIndex = searchIndex;
+        this.catalogCache = catalogCache;
+        this.transactionTemplate = transactionTemplate;
+        this.released = Counter.builder("catalog.reservations.released").register(meterRegistry);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    @Scheduled(fixedDelayString = "${reservation.expiry.interval-ms:60000}", initialDelayString = "${reservation.expiry.interval-ms:60000}")
+    public void releaseExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(ttl);
+        for (int batch = 0; batch < maxBatches; batch++) {
+            Integer count = transactionTemplate.execute(status -> releaseBatch(cutoff));
+            if (count == null || count < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private int releaseBatch(LocalDateTime cutoff) {
+        List<Long> ids = offerLayout.releaseExpiredReservations(cutoff, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        ids.forEach(id -> catalogChangeLog.record(id, CatalogChange.Type.RELEASED));
+        List<BookRow> rows = bookRepository.findRowsByIdIn(ids);
+        AfterCommit.run(() -> {
+            rows.forEach(row -> {
+                searchIndex.index(row.id(), row.title(), row.author());
+                catalogCache.bookChanged(row.id());
+            });
+            released.increment(ids.size());
+        });
+        return ids.size();
+    }
+}
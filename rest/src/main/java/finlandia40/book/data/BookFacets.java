@@ -0,0 +1,33 @@
+package finlandia40.book.data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-facet listing counts. Each facet ignores its own filter, so the client can show alternatives to the current selection.
+ */
+public record BookFacets(long total, Map<String, Long> conditions, Map<String, Long> cities) {
+
+    public static final BookFacets EMPTY = new BookFacets(0, Map.of(), Map.of());
+
+    public static BookFacets from(List<FacetCount> rows, BookFilter filter) {
+        long total = 0;
+        Map<String, Long> conditions = new TreeMap<>();
+        Map<String, Long> cities = new TreeMap<>();
+        for (FacetCount row : rows) {
+            boolean conditionMatches = filter.condition() == null || filter.condition().equals(row.condition());
+            boolean cityMatches = filter.city() == null || filter.city().equals(row.city());
+            if (cityMatches) {
+                conditions.merge(row.condition(), row.count(), Long::sum);
+            }
+            if (conditionMatches && row.city() != null) {
+                cities.merge(row.city(), row.count(), Long::sum);
+            }
+            if (conditionMatches && cityMatches) {
+                total += row.count();
+            }
+        }
+        return new BookFacets(total, conditions, cities);
+    }
+}
@@ -0,0 +1,24 @@
+package finlandia40.book.data;
+
+/**
+ * Catalog filters bound from query parameters. Blank values are treated as absent.
+ */
+public record BookFilter(String title, Double minPrice, Double maxPrice, String condition, String author, String city) {
+
+    public static final BookFilter NONE = new BookFilter(null, null, null, null, null, null);
+
+    public BookFilter {
+        title = blankToNull(title);
+        condition = blankToNull(condition);
+        author = blankToNull(author);
+        city = blankToNull(city);
+    }
+
+    public boolean hasTitle() {
+        return title != null;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
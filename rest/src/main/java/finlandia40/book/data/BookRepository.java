@@ -1,27 +1,43 @@
 package finlandia40.book.data;
 
 import finlandia40.book.model.Book;
+import finlandia40.book.search.IndexedBook;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
 
-    @Query("SELECT DISTINCT b FROM Book b LEFT JOIN FETCH b.reviews WHERE b.isSold = false AND b.pendingBuyer IS NULL")
-    List<Book> findAllAvailable();
+    @Query(BookRow.SELECT + "WHERE b.id IN :ids")
+    List<BookRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
 
-    @Query("SELECT DISTINCT b FROM Book b LEFT JOIN FETCH b.reviews WHERE b.isSold = false AND b.pendingBuyer IS NULL AND lower(b.title) LIKE lower(concat('%', :title, '%'))")
-    List<Book> findByTitleContainingIgnoreCase(@Param("title") String title);
+    @Query(BookRow.SELECT + "WHERE b.id = :id")
+    Optional<BookRow> findRowById(@Param("id") Long id);
+
+    @Query(BookRow.SELECT + "WHERE s.login = :login AND b.pendingBuyer IS NOT NULL AND b.isSold = false ORDER BY b.id")
+    List<BookRow> findPendingSaleRows(@Param("login") String login);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(BookRow.SELECT + "WHERE b.isSold = false AND b.pendingBuyer IS NULL ORDER BY b.id")
+    Stream<BookRow> streamAvailableRows();
+
+    @Query("SELECT new finlandia40.book.search.IndexedBook(b.id, b.title, b.author) FROM Book b WHERE b.isSold = false AND b.pendingBuyer IS NULL")
+    List<IndexedBook> findAllAvailableForIndex();
+
+    @Query("SELECT new finlandia40.book.search.IndexedBook(b.id, b.title, b.author) FROM Book b WHERE b.id = :id AND b.isSold = false AND b.pendingBuyer IS NULL")
+    Optional<IndexedBook> findAvailableForIndex(@Param("id") Long id);
 
     @Override
     @Query("SELECT b FROM Book b LEFT JOIN FETCH b.reviews WHERE b.id = :id")
     Optional<Book> findById(@Param("id") Long id);
-
-    @Query("SELECT b FROM Book b WHERE b.seller.login = :login AND b.pendingBuyer IS NOT NULL AND b.isSold = false")
-    List<Book> findPendingSales(@Param("login") String login);
 }
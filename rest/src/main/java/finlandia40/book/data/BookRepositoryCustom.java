@@ -0,0 +1,20 @@
+package finlandia40.book.data;
+
+import finlandia40.common.Cursor;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Ids of available books matching the filter in the requested order, starting after the cursor.
+     * {@code restrictTo} narrows the result to ids found by the search index; {@code limit} may be null for no limit.
+     */
+    List<Long> findAvailableIds(BookFilter filter, BookSort sort, Cursor after, Collection<Long> restrictTo, Integer limit);
+
+    /**
+     * Counts of available books grouped by condition and seller city, computed in a single aggregate query.
+     */
+    List<FacetCount> countFacets(BookFilter filter, Collection<Long> restrictTo);
+}
@@ -0,0 +1,134 @@
+package finlandia40.book.data;
+
+import finlandia40.book.model.Book;
+import finlandia40.common.Cursor;
+import finlandia40.user.model.SellerReputation;
+import finlandia40.user.model.UserPostgres;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.query.criteria.JpaEntityJoin;
+import org.hibernate.query.criteria.JpaRoot;
+import org.hibernate.query.sqm.tree.SqmJoinType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> findAvailableIds(BookFilter filter, BookSort sort, Cursor after, Collection<Long> restrictTo, Integer limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Book> book = query.from(Book.class);
+
+        List<Predicate> predicates = filterPredicates(cb, book, filter, restrictTo, true);
+        Expression<Double> sellerRating = sort == BookSort.SELLER_RATING ? sellerRating(cb, book) : null;
+        if (after != null) {
+            predicates.add(after(cb, book, sort, after, sellerRating));
+        }
+        query.select(book.get("id"))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(orderBy(cb, book, sort, sellerRating));
+
+        TypedQuery<Long> typedQuery = entityManager.createQuery(query);
+        if (limit != null) {
+            typedQuery.setMaxResults(limit);
+        }
+        return typedQuery.getResultList();
+    }
+
+    @Override
+    public List<FacetCount> countFacets(BookFilter filter, Collection<Long> restrictTo) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FacetCount> query = cb.createQuery(FacetCount.class);
+        Root<Book> book = query.from(Book.class);
+        Join<Book, UserPostgres> seller = book.join("seller", JoinType.LEFT);
+        Path<String> condition = book.get("bookCondition");
+        Path<String> city = seller.get("city");
+
+        query.select(cb.construct(FacetCount.class, condition, city, cb.count(book)))
+                .where(filterPredicates(cb, book, filter, restrictTo, false).toArray(Predicate[]::new))
+                .groupBy(condition, city);
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private List<Predicate> filterPredicates(CriteriaBuilder cb, Root<Book> book, BookFilter filter,
+                                             Collection<Long> restrictTo, boolean includeFacetFilters) {
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isFalse(book.get("isSold")));
+        predicates.add(cb.isNull(book.get("pendingBuyer")));
+        if (restrictTo != null) {
+            predicates.add(book.get("id").in(restrictTo));
+        }
+        if (filter.minPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(book.<Double>get("price"), filter.minPrice()));
+        }
+        if (filter.maxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(book.<Double>get("price"), filter.maxPrice()));
+        }
+        if (filter.author() != null) {
+            predicates.add(cb.equal(book.get("author"), filter.author()));
+        }
+        if (includeFacetFilters && filter.condition() != null) {
+            predicates.add(cb.equal(book.get("bookCondition"), filter.condition()));
+        }
+        if (includeFacetFilters && filter.city() != null) {
+            predicates.add(cb.equal(book.join("seller").get("city"), filter.city()));
+        }
+        return predicates;
+    }
+
+    /**
+     * Seller rating lives in seller_reputation, which has no association to Book, so it is reached with an entity join
+     * on the seller id. Sellers without reviews rank as 0.
+     */
+    private Expression<Double> sellerRating(CriteriaBuilder cb, Root<Book> book) {
+        JpaEntityJoin<SellerReputation> reputation = ((JpaRoot<Book>) book).join(SellerReputation.class, SqmJoinType.LEFT);
+        reputation.on(cb.equal(reputation.get("sellerId"), book.get("seller").get("id")));
+        return cb.coalesce(reputation.<Double>get("averageRating"), 0.0);
+    }
+
+    private Predicate after(CriteriaBuilder cb, Root<Book> book, BookSort sort, Cursor after, Expression<Double> sellerRating) {
+        Path<Long> id = book.get("id");
+        Path<Double> price = book.get("price");
+        return switch (sort) {
+            case NEWEST -> cb.lessThan(id, after.id());
+            case PRICE_ASC -> cb.or(
+                    cb.greaterThan(price, after.doubleKey()),
+                    cb.and(cb.equal(price, after.doubleKey()), cb.greaterThan(id, after.id())));
+            case PRICE_DESC -> cb.or(
+                    cb.lessThan(price, after.doubleKey()),
+                    cb.and(cb.equal(price, after.doubleKey()), cb.lessThan(id, after.id())));
+            case SELLER_RATING -> cb.or(
+                    cb.lessThan(sellerRating, after.doubleKey()),
+                    cb.and(cb.equal(sellerRating, after.doubleKey()), cb.lessThan(id, after.id())));
+            default -> cb.greaterThan(id, after.id());
+        };
+    }
+
+    private List<Order> orderBy(CriteriaBuilder cb, Root<Book> book, BookSort sort, Expression<Double> sellerRating) {
+        Path<Long> id = book.get("id");
+        Path<Double> price = book.get("price");
+        return switch (sort) {
+            case NEWEST -> List.of(cb.desc(id));
+            case PRICE_ASC -> List.of(cb.asc(price), cb.asc(id));
+            case PRICE_DESC -> List.of(cb.desc(price), cb.desc(id));
+            case SELLER_RATING -> List.of(cb.desc(sellerRating), cb.desc(id));
+            default -> List.of(cb.asc(id));
+        };
+    }
+}
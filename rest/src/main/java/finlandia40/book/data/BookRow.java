@@ -0,0 +1,34 @@
+package finlandia40.book.data;
+
+import finlandia40.book.model.RatingSummary;
+import finlandia40.review.data.ReviewRow;
+
+import java.util.List;
+
+/**
+ * Read model for a listing, built directly by a JPQL constructor expression so no entity or lazy association is hydrated.
+ * {@code reviews} stays null unless the caller asked for them.
+ */
+public record BookRow(Long id, String title, String author, String condition, Double price, String imageUrl,
+                      String sellerLogin, String sellerEmail, String pendingBuyerLogin,
+                      RatingSummary rating, Double sellerRating, List<ReviewRow> reviews) {
+
+    public static final String SELECT = "SELECT new finlandia40.book.data.BookRow(b.id, b.title, b.author, b.bookCondition, " +
+            "b.price, b.imageUrl, s.login, s.email, pb.login, " +
+            "b.ratingSummary.reviewCount, b.ratingSummary.ratingTotal, b.ratingSummary.oneStar, b.ratingSummary.twoStars, " +
+            "b.ratingSummary.threeStars, b.ratingSummary.fourStars, b.ratingSummary.fiveStars, sr.averageRating) " +
+            "FROM Book b LEFT JOIN b.seller s LEFT JOIN b.pendingBuyer pb " +
+            "LEFT JOIN SellerReputation sr ON sr.sellerId = s.id ";
+
+    public BookRow(Long id, String title, String author, String condition, Double price, String imageUrl,
+                   String sellerLogin, String sellerEmail, String pendingBuyerLogin,
+                   Integer reviewCount, Long ratingTotal, Integer oneStar, Integer twoStars,
+                   Integer threeStars, Integer fourStars, Integer fiveStars, Double sellerRating) {
+        this(id, title, author, condition, price, imageUrl, sellerLogin, sellerEmail, pendingBuyerLogin,
+                new RatingSummary(reviewCount, ratingTotal, oneStar, twoStars, threeStars, fourStars, fiveStars), sellerRating, null);
+    }
+
+    public BookRow withReviews(List<ReviewRow> reviews) {
+        return new BookRow(id, title, author, condition, price, imageUrl, sellerLogin, sellerEmail, pendingBuyerLogin, rating, sellerRating, reviews);
+    }
+}
@@ -0,0 +1,56 @@
+package finlandia40.book.data;
+
+import finlandia40.common.Cursor;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+public enum BookSort {
+    OLDEST,
+    NEWEST,
+    PRICE_ASC,
+    PRICE_DESC,
+    SELLER_RATING,
+    RELEVANCE;
+
+    public static BookSort fromParam(String value, boolean hasTitle) {
+        if (value == null || value.isBlank()) {
+            return hasTitle ? RELEVANCE : OLDEST;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort: " + value, e);
+        }
+    }
+
+    /**
+     * Relevance order comes from the search index, which pages it with a cursor of its own.
+     */
+    public boolean isKeyset() {
+        return this != RELEVANCE;
+    }
+
+    /**
+     * The order the database query uses, for merging results fetched in several id chunks.
+     */
+    public Comparator<BookRow> comparator() {
+        Comparator<BookRow> byId = Comparator.comparing(BookRow::id);
+        return switch (this) {
+            case NEWEST -> byId.reversed();
+            case PRICE_ASC -> Comparator.comparing(BookRow::price).thenComparing(byId);
+            case PRICE_DESC -> Comparator.comparing(BookRow::price).thenComparing(byId).reversed();
+            case SELLER_RATING -> Comparator.comparingDouble((BookRow book) -> book.sellerRating() != null ? book.sellerRating() : 0.0)
+                    .thenComparing(byId).reversed();
+            default -> byId;
+        };
+    }
+
+    public Cursor cursorOf(BookRow book) {
+        return switch (this) {
+            case PRICE_ASC, PRICE_DESC -> Cursor.of(book.price(), book.id());
+            case SELLER_RATING -> Cursor.of(book.sellerRating() != null ? book.sellerRating() : 0.0, book.id());
+            default -> Cursor.of(book.id());
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package finlandia40.book.data;
+
+import finlandia40.book.model.CatalogChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CatalogChangeRepository extends JpaRepository<CatalogChange, Long> {
+
+    @Query("SELECT c FROM CatalogChange c WHERE c.txid < :horizon " +
+            "AND (c.txid > :txid OR (c.txid = :txid AND c.id > :id)) ORDER BY c.txid, c.id")
+    List<CatalogChange> findSettledAfter(@Param("txid") long txid,
+                                         @Param("id") long id,
+                                         @Param("horizon") long horizon,
+                                         Pageable pageable);
+
+    /**
+     * Oldest transaction still running. Every transaction below it has finished, so no change with a lower txid can
+     * become visible any more.
+     */
+    @Query(value = "SELECT CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS text) AS bigint)", nativeQuery = true)
+    long findSettledHorizon();
+
+    @Modifying
+    @Query(value = "INSERT INTO catalog_change (offer_id, type, recorded_at) " +
+            "SELECT id, :type, :recordedAt FROM offer WHERE id IN :offerIds ORDER BY id", nativeQuery = true)
+    int insertAll(@Param("offerIds") Collection<Long> offerIds, @Param("type") String type, @Param("recordedAt") LocalDateTime recordedAt);
+
+    /**
+     * Catalog cache version, shared by all nodes; see schema.sql.
+     */
+    @Query(value = "SELECT nextval('catalog_version_seq')", nativeQuery = true)
+    long nextCatalogVersion();
+}
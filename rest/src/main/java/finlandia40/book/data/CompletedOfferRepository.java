@@ -1,13 +1,49 @@
 package finlandia40.book.data;
 
 import finlandia40.book.model.CompletedOffer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CompletedOfferRepository extends JpaRepository<CompletedOffer, Long> {
-    List<CompletedOffer> findAllByBuyerLogin(String login);
-    List<CompletedOffer> findAllBySellerLogin(String login);
+
+    @Query(CompletedOfferRow.SELECT + "WHERE bu.login = :login ORDER BY c.completionDate DESC, c.id DESC")
+    List<CompletedOfferRow> findRowsByBuyerLogin(@Param("login") String login);
+
+    @Query(CompletedOfferRow.SELECT + "WHERE s.login = :login ORDER BY c.completionDate DESC, c.id DESC")
+    List<CompletedOfferRow> findRowsBySellerLogin(@Param("login") String login);
+
+    @Query(CompletedOfferRow.SELECT + "WHERE c.buyer.id = :buyerId " +
+            "AND (c.completionDate < :beforeDate OR (c.completionDate = :beforeDate AND c.id < :beforeId)) " +
+            "ORDER BY c.completionDate DESC, c.id DESC")
+    List<CompletedOfferRow> findRowsByBuyerIdBefore(@Param("buyerId") Long buyerId,
+                                                    @Param("beforeDate") LocalDateTime beforeDate,
+                                                    @Param("beforeId") long beforeId,
+                                                    Pageable pageable);
+
+    @Query(CompletedOfferRow.SELECT + "WHERE c.sellerId = :sellerId " +
+            "AND (c.completionDate < :beforeDate OR (c.completionDate = :beforeDate AND c.id < :beforeId)) " +
+            "ORDER BY c.completionDate DESC, c.id DESC")
+    List<CompletedOfferRow> findRowsBySellerIdBefore(@Param("sellerId") Long sellerId,
+                                                     @Param("beforeDate") LocalDateTime beforeDate,
+                                                     @Param("beforeId") long beforeId,
+                                                     Pageable pageable);
+
+    @Query(CompletedOfferRow.SELECT + "WHERE c.id = :id")
+    Optional<CompletedOfferRow> findRowById(@Param("id") Long id);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(CompletedOfferRow.SELECT + "WHERE s.login = :login ORDER BY c.id")
+    Stream<CompletedOfferRow> streamRowsBySellerLogin(@Param("login") String login);
 }
@@ -0,0 +1,11 @@
+package finlandia40.book.data;
+
+import java.time.LocalDateTime;
+
+public record CompletedOfferRow(Long id, String title, String author, Double price,
+                                String sellerLogin, String buyerLogin, LocalDateTime completionDate) {
+
+    public static final String SELECT = "SELECT new finlandia40.book.data.CompletedOfferRow(c.id, c.title, c.author, c.price, " +
+            "s.login, bu.login, c.completionDate) " +
+            "FROM CompletedOffer c LEFT JOIN c.seller s LEFT JOIN c.buyer bu ";
+}
@@ -0,0 +1,4 @@
+package finlandia40.book.data;
+
+public record FacetCount(String condition, String city, Long count) {
+}
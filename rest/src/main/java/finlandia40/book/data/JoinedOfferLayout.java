@@ -0,0 +1,71 @@
+package finlandia40.book.data;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@Profile("!offer-single-table")
+public class JoinedOfferLayout implements OfferLayout {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int reserve(Long id, Long buyerId, LocalDateTime reservedAt) {
+        return entityManager.createNativeQuery("UPDATE book SET pending_buyer_id = :buyerId, reserved_at = :reservedAt " +
+                        "WHERE id = :id AND is_sold = false AND pending_buyer_id IS NULL " +
+                        "AND NOT EXISTS (SELECT 1 FROM offer o WHERE o.id = book.id AND o.seller_id = :buyerId)")
+                .setParameter("id", id)
+                .setParameter("buyerId", buyerId)
+                .setParameter("reservedAt", reservedAt)
+                .executeUpdate();
+    }
+
+    @Override
+    public List<Long> releaseExpiredReservations(LocalDateTime cutoff, int limit) {
+        return entityManager.createNativeQuery("UPDATE book SET pending_buyer_id = NULL, reserved_at = NULL " +
+                        "WHERE id IN (SELECT id FROM book WHERE reserved_at < :cutoff AND is_sold = false " +
+                        "ORDER BY reserved_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+                        "RETURNING id", Long.class)
+                .setParameter("cutoff", cutoff)
+                .setParameter("limit", limit)
+                .getResultList();
+    }
+
+    /**
+     * The book subtype row is deleted and a completed_offer row with the same id is inserted in one statement,
+     * so the shared offer row stays put.
+     */
+    @Override
+    public Optional<SaleCompletion> completeSale(Long id, String sellerLogin, LocalDateTime completionDate) {
+        List<LocalDateTime> reservedAt = entityManager.createNativeQuery("WITH sold AS (" +
+                        "DELETE FROM book b USING offer o, user_postgres s " +
+                        "WHERE b.id = :id AND o.id = b.id AND s.id = o.seller_id AND s.login = :sellerLogin " +
+                        "AND b.is_sold = false AND b.pending_buyer_id IS NOT NULL " +
+                        "RETURNING b.id, b.pending_buyer_id, b.reserved_at, o.seller_id), " +
+                        "completed AS (INSERT INTO completed_offer (id, buyer_id, seller_id, completion_date) " +
+                        "SELECT id, pending_buyer_id, seller_id, :completionDate FROM sold) " +
+                        "SELECT reserved_at FROM sold", LocalDateTime.class)
+                .setParameter("id", id)
+                .setParameter("sellerLogin", sellerLogin)
+                .setParameter("completionDate", completionDate)
+                .getResultList();
+        return SaleCompletion.from(reservedAt);
+    }
+
+    @Override
+    public int recordMonthlySale(Long offerId) {
+        return entityManager.createNativeQuery("INSERT INTO seller_monthly_sales (seller_id, sales_month, sales_count, revenue) " +
+                        "SELECT o.seller_id, CAST(date_trunc('month', c.completion_date) AS date), 1, o.price " +
+                        "FROM offer o JOIN completed_offer c ON c.id = o.id WHERE o.id = :offerId " +
+                        MONTHLY_SALE_UPSERT)
+                .setParameter("offerId", offerId)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,49 @@
+package finlandia40.book.data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Set-based offer state changes that need native SQL and therefore depend on how the {@code Offer} hierarchy is laid out
+ * in tables. The default layout is JOINED; the {@code offer-single-table} profile maps the hierarchy onto one table.
+ */
+public interface OfferLayout {
+
+    String MONTHLY_SALE_UPSERT = "ON CONFLICT (seller_id, sales_month) DO UPDATE SET " +
+            "sales_count = seller_monthly_sales.sales_count + 1, " +
+            "revenue = seller_monthly_sales.revenue + EXCLUDED.revenue";
+
+    /**
+     * Reserves the book for the buyer in one statement. Returns 0 when the book is gone, already
+     * reserved or sold, or belongs to the buyer, so concurrent losers fail without a read-modify-write.
+     */
+    int reserve(Long id, Long buyerId, LocalDateTime reservedAt);
+
+    /**
+     * Releases up to {@code limit} reservations made before {@code cutoff} and returns their ids. The range scan on
+     * reserved_at only visits expired rows, and SKIP LOCKED leaves rows a confirm-sale is working on to the next sweep.
+     */
+    List<Long> releaseExpiredReservations(LocalDateTime cutoff, int limit);
+
+    /**
+     * Turns the seller's reserved book into a completed offer with the same id, keeping its reviews and rating summary.
+     * Empty when the book is not reserved or does not belong to the seller.
+     */
+    Optional<SaleCompletion> completeSale(Long id, String sellerLogin, LocalDateTime completionDate);
+
+    /**
+     * Adds a completed sale to its seller's month in one upsert, so concurrent confirmations never lose an increment.
+     */
+    int recordMonthlySale(Long offerId);
+
+    /**
+     * @param reservedAt when the buyer reserved the book; null for reservations made before it was recorded
+     */
+    record SaleCompletion(LocalDateTime reservedAt) {
+
+        public static Optional<SaleCompletion> from(List<LocalDateTime> returned) {
+            return returned.isEmpty() ? Optional.empty() : Optional.of(new SaleCompletion(returned.get(0)));
+        }
+    }
+}
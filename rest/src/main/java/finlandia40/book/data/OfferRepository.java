@@ -2,8 +2,31 @@ package finlandia40.book.data;
 
 import finlandia40.book.model.Offer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface OfferRepository extends JpaRepository<Offer, Long> {
+
+    @Modifying
+    @Query("UPDATE Offer o SET o.ratingSummary.reviewCount = o.ratingSummary.reviewCount + 1, " +
+            "o.ratingSummary.ratingTotal = o.ratingSummary.ratingTotal + :rating, " +
+            "o.ratingSummary.oneStar = o.ratingSummary.oneStar + CASE WHEN :rating = 1 THEN 1 ELSE 0 END, " +
+            "o.ratingSummary.twoStars = o.ratingSummary.twoStars + CASE WHEN :rating = 2 THEN 1 ELSE 0 END, " +
+            "o.ratingSummary.threeStars = o.ratingSummary.threeStars + CASE WHEN :rating = 3 THEN 1 ELSE 0 END, " +
+            "o.ratingSummary.fourStars = o.ratingSummary.fourStars + CASE WHEN :rating = 4 THEN 1 ELSE 0 END, " +
+            "o.ratingSummary.fiveStars = o.ratingSummary.fiveStars + CASE WHEN :rating = 5 THEN 1 ELSE 0 END " +
+            "WHERE o.id = :id")
+    int addRating(@Param("id") Long id, @Param("rating") int rating);
+
+    /**
+     * Moves offer_seq past the highest existing id, for databases whose offers were created under the old identity column.
+     */
+    @Query(value = "SELECT setval('offer_seq', m.max_id) FROM (SELECT max(id) AS max_id FROM offer) m " +
+            "WHERE m.max_id >= (SELECT last_value FROM offer_seq)", nativeQuery = true)
+    List<Long> alignIdSequence();
 }
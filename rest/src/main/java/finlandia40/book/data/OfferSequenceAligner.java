@@ -0,0 +1,22 @@
+package finlandia40.book.data;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+@Component
+public class OfferSequenceAligner {
+
+    private final OfferRepository offerRepository;
+
+    public OfferSequenceAligner(OfferRepository offerRepository) {
+        this.offerRepository = offerRepository;
+    }
+
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void align() {
+        offerRepository.alignIdSequence();
+    }
+}
@@ -0,0 +1,17 @@
+package finlandia40.book.data;
+
+import finlandia40.book.model.SellerMonthlySales;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SellerMonthlySalesRepository extends JpaRepository<SellerMonthlySales, SellerMonthlySales.Key> {
+
+    @Query("SELECT m FROM SellerMonthlySales m WHERE m.id.sellerId = :sellerId ORDER BY m.id.salesMonth DESC")
+    List<SellerMonthlySales> findLatestBySellerId(@Param("sellerId") Long sellerId, Pageable pageable);
+}
@@ -0,0 +1,73 @@
+package finlandia40.book.data;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Statements for the single-table layout, where the offer_type discriminator tells books and completed offers apart
+ * and completing a sale is a plain update of one row.
+ */
+@Repository
+@Profile("offer-single-table")
+public class SingleTableOfferLayout implements OfferLayout {
+
+    private static final String BOOK = "'Book'";
+    private static final String COMPLETED_OFFER = "'CompletedOffer'";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int reserve(Long id, Long buyerId, LocalDateTime reservedAt) {
+        return entityManager.createNativeQuery("UPDATE offer SET pending_buyer_id = :buyerId, reserved_at = :reservedAt " +
+                        "WHERE id = :id AND offer_type = " + BOOK + " AND is_sold = false AND pending_buyer_id IS NULL " +
+                        "AND seller_id IS DISTINCT FROM :buyerId")
+                .setParameter("id", id)
+                .setParameter("buyerId", buyerId)
+                .setParameter("reservedAt", reservedAt)
+                .executeUpdate();
+    }
+
+    @Override
+    public List<Long> releaseExpiredReservations(LocalDateTime cutoff, int limit) {
+        return entityManager.createNativeQuery("UPDATE offer SET pending_buyer_id = NULL, reserved_at = NULL " +
+                        "WHERE id IN (SELECT id FROM offer WHERE reserved_at < :cutoff AND offer_type = " + BOOK + " AND is_sold = false " +
+                        "ORDER BY reserved_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+                        "RETURNING id", Long.class)
+                .setParameter("cutoff", cutoff)
+                .setParameter("limit", limit)
+                .getResultList();
+    }
+
+    @Override
+    public Optional<SaleCompletion> completeSale(Long id, String sellerLogin, LocalDateTime completionDate) {
+        List<LocalDateTime> reservedAt = entityManager.createNativeQuery("UPDATE offer o SET offer_type = " + COMPLETED_OFFER + ", " +
+                        "buyer_id = o.pending_buyer_id, completion_date = :completionDate, " +
+                        "pending_buyer_id = NULL, is_sold = true " +
+                        "FROM user_postgres s " +
+                        "WHERE o.id = :id AND o.offer_type = " + BOOK + " AND o.is_sold = false AND o.pending_buyer_id IS NOT NULL " +
+                        "AND s.id = o.seller_id AND s.login = :sellerLogin " +
+                        "RETURNING o.reserved_at", LocalDateTime.class)
+                .setParameter("id", id)
+                .setParameter("sellerLogin", sellerLogin)
+                .setParameter("completionDate", completionDate)
+                .getResultList();
+        return SaleCompletion.from(reservedAt);
+    }
+
+    @Override
+    public int recordMonthlySale(Long offerId) {
+        return entityManager.createNativeQuery("INSERT INTO seller_monthly_sales (seller_id, sales_month, sales_count, revenue) " +
+                        "SELECT o.seller_id, CAST(date_trunc('month', o.completion_date) AS date), 1, o.price " +
+                        "FROM offer o WHERE o.id = :offerId AND o.offer_type = " + COMPLETED_OFFER + " " +
+                        MONTHLY_SALE_UPSERT)
+                .setParameter("offerId", offerId)
+                .executeUpdate();
+    }
+}
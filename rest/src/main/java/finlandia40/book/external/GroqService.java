@@ -1,6 +1,6 @@
 package finlandia40.book.external;
 
-import finlandia40.book.model.Book;
+import finlandia40.book.data.BookRow;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -27,9 +27,9 @@ public class GroqService {
         this.restTemplate = restTemplate;
     }
 
-    public String chatWithAi(List<GroqModels.Message> history, List<Book> availableBooks) {
+    public String chatWithAi(List<GroqModels.Message> history, List<BookRow> availableBooks) {
         String inventoryContext = availableBooks.stream()
-                .map(b -> String.format("- \"%s\" by %s (ID: %d, Price: %.2f)", b.getTitle(), b.getAuthor(), b.getId(), b.getPrice()))
+                .map(b -> String.format("- \"%s\" by %s (ID: %d, Price: %.2f)", b.title(), b.author(), b.id(), b.price()))
                 .collect(Collectors.joining("\n"));
 
         String systemPrompt = "You are 'BookScout AI', a friendly librarian for the 'BookTrade' app. " +
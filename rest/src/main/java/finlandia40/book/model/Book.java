@@ -10,6 +10,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Getter
 @Setter
@@ -23,6 +25,8 @@ public class Book extends Offer {
     @JoinColumn(name = "pending_buyer_id")
     private UserPostgres pendingBuyer;
 
+    private LocalDateTime reservedAt;
+
     public Book(String title, String author, String bookCondition, Double price, String imageUrl, UserPostgres seller) {
         super(title, author, bookCondition, price, imageUrl, seller);
     }
@@ -0,0 +1,50 @@
+package finlandia40.book.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Append-only log of listing changes. The delta-sync position is the writing transaction id followed by the change id.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@Table(indexes = @Index(name = "idx_catalog_change_position", columnList = "txid, id"))
+public class CatalogChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long offerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @Column(nullable = false)
+    private LocalDateTime recordedAt;
+
+    // filled in by the database with the id of the writing transaction
+    @Column(nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint DEFAULT CAST(CAST(pg_current_xact_id() AS text) AS bigint)")
+    private Long txid;
+
+    public CatalogChange(Long offerId, Type type, LocalDateTime recordedAt) {
+        this.offerId = offerId;
+        this.type = type;
+        this.recordedAt = recordedAt;
+    }
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        RESERVED,
+        RELEASED,
+        REMOVED
+    }
+}
@@ -21,22 +21,14 @@ public class CompletedOffer extends Offer {
     @JoinColumn(name = "buyer_id", nullable = false)
     private UserPostgres buyer;
 
+    // Copy of the offer's seller, so seller history is served from one index; written by OfferLayout.completeSale.
+    // In the single-table layout this is the offer's own seller_id column.
+    @Column(name = "seller_id", insertable = false, updatable = false)
+    private Long sellerId;
+
     public CompletedOffer(String title, String author, String bookCondition, Double price, String imageUrl, UserPostgres seller, UserPostgres buyer, LocalDateTime completionDate) {
         super(title, author, bookCondition, price, imageUrl, seller);
         this.buyer = buyer;
         this.completionDate = completionDate;
     }
-
-    public static CompletedOffer fromBook(Book book, UserPostgres buyer) {
-        return new CompletedOffer(
-                book.getTitle(),
-                book.getAuthor(),
-                book.getBookCondition(),
-                book.getPrice(),
-                book.getImageUrl(),
-                book.getSeller(),
-                buyer,
-                LocalDateTime.now()
-        );
-    }
 }
@@ -16,10 +16,18 @@ import java.util.List;
 @Setter
 @NoArgsConstructor
 @Inheritance(strategy = InheritanceType.JOINED)
+// indexes of the subtype columns are declared per layout in META-INF/offer-*.orm.xml
+@Table(indexes = {
+        @Index(name = "idx_offer_price", columnList = "price, id"),
+        @Index(name = "idx_offer_condition", columnList = "book_condition"),
+        @Index(name = "idx_offer_author", columnList = "author"),
+        @Index(name = "idx_offer_seller", columnList = "seller_id")
+})
 public abstract class Offer {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "offer_seq")
+    @SequenceGenerator(name = "offer_seq", sequenceName = "offer_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -41,6 +49,9 @@ public abstract class Offer {
     @JoinColumn(name = "seller_id")
     private UserPostgres seller;
 
+    @Embedded
+    private RatingSummary ratingSummary = new RatingSummary();
+
     @OneToMany(mappedBy = "offer", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private List<Review> reviews = new ArrayList<>();
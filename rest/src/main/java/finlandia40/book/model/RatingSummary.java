@@ -0,0 +1,56 @@
+package finlandia40.book.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.util.List;
+
+/**
+ * Review aggregate kept on the offer row and incremented on every new review, so listings never need the review collection.
+ */
+@Embeddable
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingSummary {
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int reviewCount;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long ratingTotal;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int oneStar;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int twoStars;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int threeStars;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int fourStars;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int fiveStars;
+
+    public Double getAverage() {
+        return reviewCount == 0 ? null : (double) ratingTotal / reviewCount;
+    }
+
+    public List<Integer> getHistogram() {
+        return List.of(oneStar, twoStars, threeStars, fourStars, fiveStars);
+    }
+}
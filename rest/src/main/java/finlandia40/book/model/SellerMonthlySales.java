@@ -0,0 +1,42 @@
+package finlandia40.book.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Per-seller monthly sales rollup, incremented when a sale is confirmed so statistics never aggregate raw sales.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+public class SellerMonthlySales {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(nullable = false)
+    private long salesCount;
+
+    @Column(nullable = false)
+    private double revenue;
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "seller_id")
+        private Long sellerId;
+
+        @Column(name = "sales_month")
+        private LocalDate salesMonth;
+    }
+}
@@ -0,0 +1,244 @@
+package finlandia40.book.search;
+
+import finlandia40.book.data.BookRepository;
+import finlandia40.common.Cursor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram inverted index over the title and author of available books.
+ * Text is lower-cased and folded to ASCII letters, so "Wiedźmin" and "wiedzmin" produce the same grams.
+ * Queries shorter than a gram match word prefixes only, which keeps their posting range to the grams starting a word.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final double MIN_GRAM_COVERAGE = 0.6;
+    private static final Comparator<Hit> RANKING = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparingInt(Hit::titleLength)
+            .thenComparingLong(Hit::id);
+
+    private final BookRepository bookRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Set<Long>> postings = new TreeMap<>();
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    public BookSearchIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<IndexedBook> books = bookRepository.findAllAvailableForIndex();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            entries.clear();
+            books.forEach(book -> indexLocked(book.id(), book.title(), book.author()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Long id, String title, String author) {
+        lock.writeLock().lock();
+        try {
+            indexLocked(id, title, author);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-reads one book after another node changed it: indexed while it is available, removed otherwise.
+     */
+    public void refresh(Long id) {
+        bookRepository.findAvailableForIndex(id).ifPresentOrElse(
+                book -> index(book.id(), book.title(), book.author()),
+                () -> remove(id));
+    }
+
+    /**
+     * Returns every matching book, best match first, resuming after {@code after} when it is given. Substring hits rank
+     * above fuzzy gram overlaps, and title hits rank above author hits.
+     */
+    public List<Hit> search(String query, Cursor after) {
+        String folded = fold(query);
+        if (folded.isEmpty()) {
+            return List.of();
+        }
+        Hit position = after != null ? Hit.of(after) : null;
+        lock.readLock().lock();
+        try {
+            List<Hit> hits = new ArrayList<>();
+            for (Map.Entry<Long, Integer> candidate : candidates(folded).entrySet()) {
+                Entry entry = entries.get(candidate.getKey());
+                double score = score(entry, folded, candidate.getValue());
+                Hit hit = new Hit(candidate.getKey(), score, entry.title().length());
+                if (score > 0 && (position == null || RANKING.compare(hit, position) > 0)) {
+                    hits.add(hit);
+                }
+            }
+            hits.sort(RANKING);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Integer> candidates(String folded) {
+        Map<Long, Integer> matchedGrams = new HashMap<>();
+        if (folded.length() < GRAM) {
+            // Padded grams starting with a space open a word, so a short prefix maps onto a handful of them.
+            postings.subMap(" " + folded, true, " " + folded + Character.MAX_VALUE, false).values()
+                    .forEach(ids -> ids.forEach(id -> matchedGrams.put(id, 1)));
+            return matchedGrams;
+        }
+        for (String gram : queryGrams(folded)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.forEach(id -> matchedGrams.merge(id, 1, Integer::sum));
+            }
+        }
+        return matchedGrams;
+    }
+
+    private double score(Entry entry, String folded, int matchedGrams) {
+        double score = 0;
+        if (entry.title().contains(folded)) {
+            score += entry.title().startsWith(folded) ? 4 : 3;
+        } else if (entry.author().contains(folded)) {
+            score += 2;
+        }
+        if (folded.length() >= GRAM) {
+            double coverage = (double) matchedGrams / queryGrams(folded).size();
+            if (score == 0 && coverage < MIN_GRAM_COVERAGE) {
+                return 0;
+            }
+            score += coverage;
+        }
+        return score;
+    }
+
+    private void indexLocked(Long id, String title, String author) {
+        removeLocked(id);
+        String foldedTitle = fold(title);
+        String foldedAuthor = fold(author);
+        Set<String> grams = new HashSet<>();
+        addGrams(" " + foldedTitle + " ", grams);
+        addGrams(" " + foldedAuthor + " ", grams);
+        entries.put(id, new Entry(foldedTitle, foldedAuthor, grams));
+        grams.forEach(gram -> postings.computeIfAbsent(gram, key -> new HashSet<>()).add(id));
+    }
+
+    private void removeLocked(Long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (String gram : entry.grams()) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    private static Set<String> queryGrams(String folded) {
+        Set<String> grams = new HashSet<>();
+        addGrams(folded, grams);
+        return grams;
+    }
+
+    private static void addGrams(String text, Set<String> grams) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+    }
+
+    static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            c = foldLetter(Character.toLowerCase(c));
+            if (!Character.isLetterOrDigit(c)) {
+                pendingSpace = folded.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                folded.append(' ');
+                pendingSpace = false;
+            }
+            folded.append(c);
+        }
+        return folded.toString();
+    }
+
+    // Letters with a stroke have no canonical decomposition, so NFD leaves them untouched.
+    private static char foldLetter(char c) {
+        return switch (c) {
+            case 'ł' -> 'l';
+            case 'ø' -> 'o';
+            case 'đ' -> 'd';
+            default -> c;
+        };
+    }
+
+    private record Entry(String title, String author, Set<String> grams) {
+    }
+
+    /**
+     * A ranked match. Its cursor carries the full ranking key, so the next page starts right after it even when books
+     * were added or removed in between.
+     */
+    public record Hit(Long id, double score, int titleLength) {
+
+        private static final char KEY_SEPARATOR = '/';
+
+        public Cursor cursor() {
+            return Cursor.of(Double.toString(score) + KEY_SEPARATOR + titleLength, id);
+        }
+
+        static Hit of(Cursor cursor) {
+            try {
+                int separator = cursor.key().indexOf(KEY_SEPARATOR);
+                return new Hit(cursor.id(), Double.parseDouble(cursor.key().substring(0, separator)),
+                        Integer.parseInt(cursor.key().substring(separator + 1)));
+            } catch (NullPointerException | IndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package finlandia40.book.search;
+
+public record IndexedBook(Long id, String title, String author) {
+}
@@ -1,15 +1,33 @@
 package finlandia40.book.web;
 
 import finlandia40.book.business.BookService;
+import finlandia40.book.business.CatalogCache;
+import finlandia40.book.business.CatalogChangeLog;
+import finlandia40.book.business.CatalogImporter;
+import finlandia40.book.data.BookFacets;
+import finlandia40.book.data.BookFilter;
+import finlandia40.book.data.BookRow;
+import finlandia40.book.data.BookSort;
+import finlandia40.book.data.CompletedOfferRow;
 import finlandia40.book.model.Book;
-import finlandia40.book.model.CompletedOffer;
+import finlandia40.book.model.RatingSummary;
+import finlandia40.common.Cursor;
+import finlandia40.common.CursorPage;
+import finlandia40.common.VersionETag;
+import finlandia40.review.data.ReviewRow;
 import finlandia40.review.model.Review;
 import finlandia40.user.model.UserPostgres;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
 import java.security.Principal;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -18,22 +36,80 @@ import java.util.stream.Collectors;
 public class BookController {
 
     private final BookService bookService;
+    private final CatalogCache catalogCache;
+    private final CatalogImporter catalogImporter;
 
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, CatalogCache catalogCache, CatalogImporter catalogImporter) {
         this.bookService = bookService;
+        this.catalogCache = catalogCache;
+        this.catalogImporter = catalogImporter;
     }
 
     @GetMapping("/books")
-    public List<BookResponse> getAllBooks(@RequestParam(required = false) String title) {
-        return bookService.getAllBooks(title).stream()
+    public List<BookResponse> getAllBooks(BookFilter filter,
+                                          @RequestParam(required = false) String sort,
+                                          @RequestParam(defaultValue = "true") boolean reviews,
+                                          ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
+        return bookService.getAllBooks(filter, BookSort.fromParam(sort, filter.hasTitle()), reviews).stream()
                 .map(this::convertToResponse)
                 .collect(Collectors.toList());
     }
 
+    @GetMapping("/books/page")
+    public CursorPage<BookResponse> getBooksPage(BookFilter filter,
+                                                 @RequestParam(required = false) String sort,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) Integer size,
+                                                 @RequestParam(defaultValue = "false") boolean reviews,
+                                                 ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
+        BookSort bookSort = BookSort.fromParam(sort, filter.hasTitle());
+        int pageSize = CursorPage.pageSize(size);
+        if (!bookSort.isKeyset()) {
+            return bookService.getRelevancePage(filter, Cursor.decode(cursor), pageSize, reviews)
+                    .map(this::convertToResponse);
+        }
+        List<BookRow> books = bookService.getAvailableBooksPage(filter, bookSort, Cursor.decode(cursor), pageSize + 1, reviews);
+        return CursorPage.of(books, pageSize, bookSort::cursorOf)
+                .map(this::convertToResponse);
+    }
+
+    @GetMapping("/books/facets")
+    public BookFacets getFacets(BookFilter filter, ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
+        return bookService.getFacets(filter);
+    }
+
+    /**
+     * Delta sync: listings created, updated, reserved or removed after the given sync token.
+     * Call without {@code since} before the initial full load to obtain a starting token.
+     */
+    @GetMapping("/books/changes")
+    public CatalogChangesResponse getChanges(@RequestParam(required = false) String since,
+                                             @RequestParam(required = false) Integer size) {
+        CatalogChangeLog.CatalogDelta delta = bookService.getChangesSince(Cursor.decode(since), CursorPage.pageSize(size));
+        List<CatalogChangeResponse> changes = delta.entries().stream()
+                .map(entry -> new CatalogChangeResponse(
+                        entry.offerId(),
+                        entry.type().name(),
+                        entry.book() != null ? convertToResponse(entry.book()) : null))
+                .toList();
+        return new CatalogChangesResponse(changes, delta.position().encode(), delta.hasMore());
+    }
+
     @GetMapping("/books/{id}")
-    public BookResponse getBookById(@PathVariable Long id) {
-        Book book = bookService.getBookById(id);
-        return convertToResponse(book);
+    public BookResponse getBookById(@PathVariable Long id, ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
+        return convertToResponse(bookService.getBookDetails(id));
     }
 
     @PostMapping("/books")
@@ -43,6 +119,15 @@ public class BookController {
         return convertToResponse(newBook);
     }
 
+    @PostMapping(value = "/books/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public CatalogImporter.ImportResult importBooks(HttpServletRequest request, Principal principal) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        if (contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"))) {
+            return catalogImporter.importCsv(request.getInputStream(), principal.getName());
+        }
+        return catalogImporter.importJson(request.getInputStream(), principal.getName());
+    }
+
     @PatchMapping("/books/{id}/image")
     public void updateBookImage(@PathVariable Long id, @RequestBody UpdateImageRequest request) {
         bookService.updateBookImage(id, request.imageUrl());
@@ -55,31 +140,111 @@ public class BookController {
 
     @PostMapping("/books/{id}/confirm-sale")
     public CompletedOfferResponse confirmSale(@PathVariable Long id, Principal principal) {
-        CompletedOffer completedOffer = bookService.confirmSale(id, principal.getName());
-        return convertToCompletedResponse(completedOffer);
+        return convertToCompletedResponse(bookService.confirmSale(id, principal.getName()));
     }
 
     @GetMapping("/books/pending")
-    public List<BookResponse> getPendingSales(Principal principal) {
+    public List<BookResponse> getPendingSales(Principal principal, ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
         return bookService.getPendingSales(principal.getName()).stream()
                 .map(this::convertToResponse)
                 .collect(Collectors.toList());
     }
 
     @GetMapping("/history/purchases")
-    public List<CompletedOfferResponse> getPurchaseHistory(Principal principal) {
+    public List<CompletedOfferResponse> getPurchaseHistory(Principal principal, ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
         return bookService.getPurchaseHistory(principal.getName()).stream()
                 .map(this::convertToCompletedResponse)
                 .collect(Collectors.toList());
     }
 
     @GetMapping("/history/sales")
-    public List<CompletedOfferResponse> getSalesHistory(Principal principal) {
+    public List<CompletedOfferResponse> getSalesHistory(Principal principal, ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
         return bookService.getSalesHistory(principal.getName()).stream()
                 .map(this::convertToCompletedResponse)
                 .collect(Collectors.toList());
     }
 
+    @GetMapping("/history/purchases/page")
+    public CursorPage<CompletedOfferResponse> getPurchaseHistoryPage(@RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) Integer size,
+                                                                     Principal principal,
+                                                                     ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
+        int pageSize = CursorPage.pageSize(size);
+        List<CompletedOfferRow> offers = bookService.getPurchaseHistoryPage(principal.getName(), Cursor.decode(cursor), pageSize + 1);
+        return CursorPage.of(offers, pageSize, offer -> Cursor.of(offer.completionDate(), offer.id()))
+                .map(this::convertToCompletedResponse);
+    }
+
+    @GetMapping("/history/sales/page")
+    public CursorPage<CompletedOfferResponse> getSalesHistoryPage(@RequestParam(required = false) String cursor,
+                                                                  @RequestParam(required = false) Integer size,
+                                                                  Principal principal,
+                                                                  ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
+        int pageSize = CursorPage.pageSize(size);
+        List<CompletedOfferRow> offers = bookService.getSalesHistoryPage(principal.getName(), Cursor.decode(cursor), pageSize + 1);
+        return CursorPage.of(offers, pageSize, offer -> Cursor.of(offer.completionDate(), offer.id()))
+                .map(this::convertToCompletedResponse);
+    }
+
+    @GetMapping("/history/sales/stats")
+    public List<MonthlySalesResponse> getSalesStats(@RequestParam(defaultValue = "12") int months,
+                                                    Principal principal,
+                                                    ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
+        return bookService.getMonthlySales(principal.getName(), Math.max(1, Math.min(months, 120))).stream()
+                .map(stats -> new MonthlySalesResponse(
+                        YearMonth.from(stats.getId().getSalesMonth()).toString(),
+                        stats.getSalesCount(),
+                        stats.getRevenue()))
+                .toList();
+    }
+
+    /**
+     * Sort names and search cursors are checked below the web layer, which reports them as illegal arguments.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public void invalidParameter(IllegalArgumentException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+    }
+
+    private BookResponse convertToResponse(BookRow book) {
+        List<ReviewResponse> reviewResponses = book.reviews() != null
+                ? book.reviews().stream().map(this::convertReviewToResponse).collect(Collectors.toList())
+                : null;
+
+        return new BookResponse(
+                book.id(),
+                book.title(),
+                book.author(),
+                book.condition(),
+                book.price(),
+                book.imageUrl(),
+                book.sellerLogin(),
+                book.sellerEmail(),
+                book.pendingBuyerLogin(),
+                reviewResponses,
+                convertRatingToResponse(book.rating()),
+                book.sellerRating()
+        );
+    }
+
     private BookResponse convertToResponse(Book book) {
         List<ReviewResponse> reviewResponses = book.getReviews().stream()
                 .map(this::convertReviewToResponse)
@@ -98,33 +263,46 @@ public class BookController {
                 seller != null ? seller.getLogin() : null,
                 seller != null ? seller.getEmail() : null,
                 pendingBuyer != null ? pendingBuyer.getLogin() : null,
-                reviewResponses
+                reviewResponses,
+                convertRatingToResponse(book.getRatingSummary()),
+                null
         );
     }
 
-    private CompletedOfferResponse convertToCompletedResponse(CompletedOffer offer) {
-        UserPostgres seller = offer.getSeller();
-        UserPostgres buyer = offer.getBuyer();
-
+    private CompletedOfferResponse convertToCompletedResponse(CompletedOfferRow offer) {
         return new CompletedOfferResponse(
-                offer.getId(),
-                offer.getTitle(),
-                offer.getAuthor(),
-                offer.getPrice(),
-                seller != null ? seller.getLogin() : null,
-                buyer != null ? buyer.getLogin() : null,
-                offer.getCompletionDate()
+                offer.id(),
+                offer.title(),
+                offer.author(),
+                offer.price(),
+                offer.sellerLogin(),
+                offer.buyerLogin(),
+                offer.completionDate()
         );
     }
 
+    private RatingSummaryResponse convertRatingToResponse(RatingSummary summary) {
+        return new RatingSummaryResponse(summary.getReviewCount(), summary.getAverage(), summary.getHistogram());
+    }
+
     private ReviewResponse convertReviewToResponse(Review review) {
         return new ReviewResponse(review.getId(), review.getRating(), review.getComment(), review.getReviewerName());
     }
 
+    private ReviewResponse convertReviewToResponse(ReviewRow review) {
+        return new ReviewResponse(review.id(), review.rating(), review.comment(), review.reviewerName());
+    }
+
     // DTOs
     public record CreateBookRequest(String title, String author, String condition, Double price, String imageUrl) {}
     public record UpdateImageRequest(String imageUrl) {}
     public record ReviewResponse(Long id, int rating, String comment, String reviewerName) {}
-    public record BookResponse(Long id, String title, String author, String condition, Double price, String imageUrl, String sellerLogin, String sellerEmail, String pendingBuyerLogin, List<ReviewResponse> reviews) {}
+    public record RatingSummaryResponse(int count, Double average, List<Integer> histogram) {}
+    // reviews is null when the caller asked for the summary-only view
+    public record BookResponse(Long id, String title, String author, String condition, Double price, String imageUrl, String sellerLogin, String sellerEmail, String pendingBuyerLogin, List<ReviewResponse> reviews, RatingSummaryResponse rating, Double sellerRating) {}
+    public record CatalogChangeResponse(Long id, String type, BookResponse book) {}
+    public record CatalogChangesResponse(List<CatalogChangeResponse> changes, String syncToken, boolean hasMore) {}
+    public record MonthlySalesResponse(String month, long salesCount, double revenue) {}
+
     public record CompletedOfferResponse(Long id, String title, String author, Double price, String sellerLogin, String buyerLogin, LocalDateTime completionDate) {}
 }
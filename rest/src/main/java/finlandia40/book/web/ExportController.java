@@ -0,0 +1,46 @@
+package finlandia40.book.web;
+
+import finlandia40.book.business.CatalogExporter;
+import finlandia40.book.business.ExportFormat;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    private final CatalogExporter catalogExporter;
+
+    public ExportController(CatalogExporter catalogExporter) {
+        this.catalogExporter = catalogExporter;
+    }
+
+    @GetMapping("/books")
+    public void exportBooks(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        prepare(response, exportFormat, "books");
+        catalogExporter.exportAvailableBooks(exportFormat, response.getOutputStream());
+    }
+
+    @GetMapping("/sales")
+    public void exportSales(@RequestParam(defaultValue = "ndjson") String format,
+                            Principal principal,
+                            HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        prepare(response, exportFormat, "sales");
+        catalogExporter.exportSales(principal.getName(), exportFormat, response.getOutputStream());
+    }
+
+    private static void prepare(HttpServletResponse response, ExportFormat format, String name) {
+        response.setContentType(format.contentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "." + format.extension() + "\"");
+    }
+}
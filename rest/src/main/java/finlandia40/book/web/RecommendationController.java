@@ -1,9 +1,11 @@
 package finlandia40.book.web;
 
 import finlandia40.book.business.BookService;
+import finlandia40.book.data.BookFilter;
+import finlandia40.book.data.BookRow;
+import finlandia40.book.data.BookSort;
 import finlandia40.book.external.GroqModels;
 import finlandia40.book.external.GroqService;
-import finlandia40.book.model.Book;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -22,7 +24,7 @@ public class RecommendationController {
 
     @PostMapping("/chat")
     public String chatWithAi(@RequestBody List<GroqModels.Message> history) {
-        List<Book> availableOffers = bookService.getAllBooks(null);
+        List<BookRow> availableOffers = bookService.getAllBooks(BookFilter.NONE, BookSort.OLDEST, false);
         return groqService.chatWithAi(history, availableOffers);
     }
 }
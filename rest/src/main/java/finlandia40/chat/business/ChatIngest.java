@@ -0,0 +1,218 @@
+package finlandia40.chat.business;
+
+import finlandia40.chat.data.ChatMessageIds;
+import finlandia40.chat.dto.DtoMapper;
+import finlandia40.chat.dto.MessageAck;
+import finlandia40.chat.dto.MessageDto;
+import finlandia40.chat.model.ChatMessage;
+import finlandia40.chat.websocket.ChatFanout;
+import finlandia40.user.business.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind path for chat messages sent over STOMP. A message gets its id and timestamp on arrival and is acked as
+ * ACCEPTED right away; one writer thread persists the queue in batches and acks each sender once its message is
+ * committed. When the queue stays full for longer than the offer timeout the message is refused with a BUSY ack.
+ * <p>
+ * The batch transaction numbers each message in the sender's and the receiver's streams and broadcasts it as it
+ * commits, so every user gets messages in stream order from whichever node stored them, and the last number a client
+ * saw is a resume point that holds across nodes. Only id assignment and enqueueing are serialized on arrival.
+ */
+@Service
+public class ChatIngest implements SmartLifecycle {
+
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long FULL_QUEUE_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ChatService chatService;
+    private final ChatMessageIds messageIds;
+    private final UserService userService;
+    private final DtoMapper dtoMapper;
+    private final ChatFanout chatFanout;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingMessage> queue;
+    private final Map<String, Long> userIds = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final long offerTimeoutMs;
+    private final Counter busy;
+    private final Counter failed;
+    private final Timer batchTimer;
+    private final Timer persistLag;
+    private volatile boolean running;
+    private Thread writer;
+
+    public ChatIngest(ChatService chatService,
+                      ChatMessageIds messageIds,
+                      UserService userService,
+                      DtoMapper dtoMapper,
+                      ChatFanout chatFanout,
+                      TransactionTemplate transactionTemplate,
+                      MeterRegistry meterRegistry,
+                      @Value("${chat.ingest.queue-capacity:10000}") int queueCapacity,
+                      @Value("${chat.ingest.batch-size:200}") int batchSize,
+                      @Value("${chat.ingest.offer-timeout-ms:100}") long offerTimeoutMs) {
+        this.chatService = chatService;
+        this.messageIds = messageIds;
+        this.userService = userService;
+        this.dtoMapper = dtoMapper;
+        this.chatFanout = chatFanout;
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        Gauge.builder("chat.ingest.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+        this.busy = Counter.builder("chat.ingest.rejected").tag("reason", "busy").register(meterRegistry);
+        this.failed = Counter.builder("chat.ingest.rejected").tag("reason", "failed").register(meterRegistry);
+        this.batchTimer = Timer.builder("chat.ingest.batch").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        this.persistLag = Timer.builder("chat.ingest.persist.lag").publishPercentiles(0.5, 0.99).register(meterRegistry);
+    }
+
+    public void accept(MessageDto dto, String senderLogin) {
+        Long senderId = userIds.computeIfAbsent(senderLogin, login -> userService.loadUserByLogin(login).getId());
+        if (dto.receiverId() == null || dto.content() == null || dto.content().isBlank()
+                || dto.content().length() > ChatMessage.MAX_CONTENT_LENGTH) {
+            ack(senderId, new MessageAck(dto.clientMessageId(), null, MessageAck.Status.REJECTED));
+            return;
+        }
+        PendingMessage message = enqueue(senderId, dto);
+        if (message == null) {
+            busy.increment();
+            ack(senderId, new MessageAck(dto.clientMessageId(), null, MessageAck.Status.BUSY));
+            return;
+        }
+        LockSupport.unpark(writer);
+        // the later PERSISTED ack carries the same id, so a congested client can skip this one
+        chatFanout.sendToUser(senderId, "acks", new MessageAck(message.clientMessageId(), message.id(), MessageAck.Status.ACCEPTED),
+                ChatFanout.DROPPABLE);
+    }
+
+    /**
+     * Issues the id and queues the message in one step, so the writer stores messages in id order. Returns null when
+     * the queue stayed full.
+     */
+    private PendingMessage enqueue(Long senderId, MessageDto dto) {
+        messageIds.prefetch();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+        while (running) {
+            synchronized (this) {
+                if (queue.remainingCapacity() > 0) {
+                    PendingMessage message = new PendingMessage(messageIds.next(), senderId, dto.receiverId(), dto.content(),
+                            LocalDateTime.now(), dto.clientMessageId());
+                    queue.add(message);
+                    return message;
+                }
+            }
+            if (System.nanoTime() >= deadline) {
+                return null;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FULL_QUEUE_BACKOFF_NANOS);
+        }
+        return null;
+    }
+
+    private void ack(Long senderId, MessageAck ack) {
+        chatFanout.sendToUser(senderId, "acks", ack);
+    }
+
+    private void drain() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            if (queue.isEmpty()) {
+                LockSupport.parkNanos(POLL_NANOS);
+                continue;
+            }
+            queue.drainTo(batch, batchSize);
+            try {
+                persist(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void persist(List<PendingMessage> batch) {
+        try {
+            batchTimer.record(() -> store(batch));
+            batch.forEach(this::persisted);
+        } catch (RuntimeException e) {
+            // one bad row, e.g. an unknown receiver, fails the whole insert; retry one by one to find it
+            for (PendingMessage message : batch) {
+                try {
+                    store(List.of(message));
+                    persisted(message);
+                } catch (RuntimeException single) {
+                    failed.increment();
+                    ack(message.senderId(), new MessageAck(message.clientMessageId(), message.id(), MessageAck.Status.REJECTED));
+                }
+            }
+        }
+    }
+
+    private void store(List<PendingMessage> batch) {
+        transactionTemplate.executeWithoutResult(status -> chatService.saveMessages(batch).forEach(this::broadcast));
+    }
+
+    /**
+     * Each side gets the frame with its own stream number; a message to oneself is sent once.
+     */
+    private void broadcast(SequencedMessage sequenced) {
+        PendingMessage message = sequenced.message();
+        MessageDto dto = dtoMapper.convertPendingMessageToChatMessageDto(message);
+        chatFanout.sendToUserOnCommit(message.receiverId(), "messages", dto,
+                ChatFanout.messageHeaders(message.id(), sequenced.receiverSeq()));
+        if (!message.senderId().equals(message.receiverId())) {
+            chatFanout.sendToUserOnCommit(message.senderId(), "messages", dto,
+                    ChatFanout.messageHeaders(message.id(), sequenced.senderSeq()));
+        }
+    }
+
+    private void persisted(PendingMessage message) {
+        persistLag.record(Duration.between(message.sent(), LocalDateTime.now()));
+        ack(message.senderId(), new MessageAck(message.clientMessageId(), message.id(), MessageAck.Status.PERSISTED));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::drain, "chat-ingest-writer");
+        writer.start();
+    }
+
+    /**
+     * Stops taking messages and waits for the writer to flush what is already queued.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
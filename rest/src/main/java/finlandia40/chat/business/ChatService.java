@@ -1,69 +1,218 @@
 package finlandia40.chat.business;
 
 import finlandia40.chat.data.ChatMessageRepository;
-import finlandia40.chat.dto.MessageDto;
+import finlandia40.chat.data.ChatMessageRow;
+import finlandia40.chat.data.ChatSearchRow;
+import finlandia40.chat.data.ChatSequenceRepository;
+import finlandia40.chat.data.ChatStreamRow;
+import finlandia40.chat.data.ConversationRepository;
+import finlandia40.chat.data.ConversationRow;
 import finlandia40.chat.model.ChatMessage;
+import finlandia40.chat.model.Conversation;
+import finlandia40.common.Cursor;
 import finlandia40.user.business.UserService;
 import finlandia40.user.model.UserPostgres;
 import finlandia40.user.web.UserController;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
 public class ChatService {
 
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final int MAX_SEARCH_WORDS = 8;
 
     private final ChatMessageRepository chatMessageRepository;
+    private final ConversationRepository conversationRepository;
+    private final ChatSequenceRepository chatSequenceRepository;
     private final UserService userService;
 
-    public ChatService(ChatMessageRepository chatMessageRepository, UserService userService) {
+    public ChatService(ChatMessageRepository chatMessageRepository, ConversationRepository conversationRepository,
+                       ChatSequenceRepository chatSequenceRepository, UserService userService) {
         this.chatMessageRepository = chatMessageRepository;
+        this.conversationRepository = conversationRepository;
+        this.chatSequenceRepository = chatSequenceRepository;
         this.userService = userService;
     }
 
-    public List<ChatMessage> getMessagesForTwoCertainUsers(Long secondUserId) {
+    public List<ChatMessageRow> getMessagesForTwoCertainUsers(Long secondUserId) {
+        return chatMessageRepository.findRowsByConversationKey(conversationWith(secondUserId));
+    }
+
+    /**
+     * Newest first; {@code before} is the (sent, id) position of the oldest message already shown.
+     */
+    public List<ChatMessageRow> getMessagesPage(Long secondUserId, Cursor before, int limit) {
+        String conversationKey = conversationWith(secondUserId);
+        return before == null
+                ? chatMessageRepository.findRowsByConversationKeyBefore(conversationKey, LATEST, Long.MAX_VALUE, PageRequest.ofSize(limit))
+                : chatMessageRepository.findRowsByConversationKeyBefore(conversationKey, before.dateTimeKey(), before.id(), PageRequest.ofSize(limit));
+    }
+
+    /**
+     * Committed messages of the user's stream numbered above {@code afterSeq}, oldest first; limited to one
+     * conversation when {@code partnerId} is given.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatStreamRow> getStreamAfter(Long userId, Long partnerId, long afterSeq, int limit) {
+        return partnerId == null
+                ? chatMessageRepository.findStreamAfter(userId, afterSeq, limit)
+                : chatMessageRepository.findStreamAfterInConversation(userId, ChatMessage.conversationKey(userId, partnerId), afterSeq, limit);
+    }
+
+    /**
+     * Messages of conversations the caller takes part in that contain every word of {@code text} as a word prefix,
+     * newest first below {@code before}; only the conversation with {@code secondUserId} when it is given.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatSearchRow> searchMessages(String text, Long secondUserId, Cursor before, int limit) {
+        String query = prefixQuery(text);
+        if (query.isEmpty()) {
+            return List.of();
+        }
+        long beforeId = before != null ? before.id() : Long.MAX_VALUE;
+        if (secondUserId != null) {
+            return chatMessageRepository.searchByConversationKey(conversationWith(secondUserId), query, beforeId, limit);
+        }
+        return chatMessageRepository.searchByUserId(currentUser().getId(), query, beforeId, limit);
+    }
+
+    /**
+     * Builds a tsquery from letters and digits only, so user input never reaches the query syntax.
+     */
+    private static String prefixQuery(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .distinct()
+                .limit(MAX_SEARCH_WORDS)
+                .map(word -> word + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+
+    private String conversationWith(Long secondUserId) {
         UserDetails senderDetails =
                 (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         UserPostgres user1 = userService.loadUserByLogin(senderDetails.getUsername());
         UserPostgres user2 = userService.loadUserById(secondUserId);
-        return chatMessageRepository.
-                findByFirstUserAndSecondUserOrFirstUserAndSecondUser(user1, user2, user2, user1);
+        return ChatMessage.conversationKey(user1.getId(), user2.getId());
     }
 
-    public ChatMessage saveMessage(MessageDto dto, String senderLogin) {
-        UserPostgres sender = userService.loadUserByLogin(senderLogin);
-        UserPostgres receiver = userService.loadUserById(dto.receiverId());
-        ChatMessage chatMessage = ChatMessage.builder()
-                .firstUser(sender)
-                .secondUser(receiver)
-                .message(dto.content())
-                .sent(LocalDateTime.now())
-                .build();
-        return chatMessageRepository.save(chatMessage);
+    /**
+     * Writes a batch from the ingest queue and moves the inbox rows of both sides to the newest message per pair;
+     * only the receiver's unread counter goes up. Each message takes the next number of its sender's and receiver's
+     * streams, in batch order; the numbers are returned in the same order.
+     */
+    @Transactional
+    public List<SequencedMessage> saveMessages(List<PendingMessage> messages) {
+        List<SequencedMessage> sequenced = sequence(messages);
+        int size = messages.size();
+        Long[] ids = new Long[size];
+        Long[] senderIds = new Long[size];
+        Long[] receiverIds = new Long[size];
+        Long[] senderSeqs = new Long[size];
+        Long[] receiverSeqs = new Long[size];
+        LocalDateTime[] sent = new LocalDateTime[size];
+        String[] contents = new String[size];
+        String[] conversationKeys = new String[size];
+        Map<List<Long>, InboxUpdate> inbox = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            PendingMessage message = messages.get(i);
+            ids[i] = message.id();
+            senderIds[i] = message.senderId();
+            receiverIds[i] = message.receiverId();
+            senderSeqs[i] = sequenced.get(i).senderSeq();
+            receiverSeqs[i] = sequenced.get(i).receiverSeq();
+            sent[i] = message.sent();
+            contents[i] = message.content();
+            conversationKeys[i] = ChatMessage.conversationKey(message.senderId(), message.receiverId());
+            inbox.computeIfAbsent(List.of(message.senderId(), message.receiverId()), key -> new InboxUpdate()).add(message, 0);
+            if (!message.senderId().equals(message.receiverId())) {
+                inbox.computeIfAbsent(List.of(message.receiverId(), message.senderId()), key -> new InboxUpdate()).add(message, 1);
+            }
+        }
+        chatMessageRepository.insertAll(ids, senderIds, receiverIds, sent, contents, conversationKeys, senderSeqs, receiverSeqs);
+        inbox.forEach((pair, update) -> conversationRepository.recordMessage(pair.get(0), pair.get(1),
+                update.last.id(), update.last.sent(), Conversation.preview(update.last.content()), update.unread));
+        return sequenced;
     }
 
-    public List<UserController.UserProfileResponse> getActiveChatPartners() {
+    private List<SequencedMessage> sequence(List<PendingMessage> messages) {
+        Map<Long, Long> counts = new LinkedHashMap<>();
+        for (PendingMessage message : messages) {
+            counts.merge(message.senderId(), 1L, Long::sum);
+            if (!message.senderId().equals(message.receiverId())) {
+                counts.merge(message.receiverId(), 1L, Long::sum);
+            }
+        }
+        Map<Long, Long> next = new HashMap<>();
+        chatSequenceRepository.reserve(counts.keySet().toArray(Long[]::new), counts.values().toArray(Long[]::new))
+                .forEach(reserved -> next.put(reserved.getUserId(), reserved.getLastSeq() - counts.get(reserved.getUserId()) + 1));
+        List<SequencedMessage> sequenced = new ArrayList<>(messages.size());
+        for (PendingMessage message : messages) {
+            long senderSeq = next.merge(message.senderId(), 1L, Long::sum) - 1;
+            long receiverSeq = message.senderId().equals(message.receiverId())
+                    ? senderSeq
+                    : next.merge(message.receiverId(), 1L, Long::sum) - 1;
+            sequenced.add(new SequencedMessage(message, senderSeq, receiverSeq));
+        }
+        return sequenced;
+    }
+
+    private static class InboxUpdate {
+
+        private PendingMessage last;
+        private int unread;
+
+        void add(PendingMessage message, int unread) {
+            if (last == null || message.id() > last.id()) {
+                last = message;
+            }
+            this.unread += unread;
+        }
+    }
+
+    /**
+     * Inbox ordered by the latest message, newest first; {@code before} is the (lastMessageAt, partnerId) position of
+     * the last conversation already shown.
+     */
+    @Transactional(readOnly = true)
+    public List<ConversationRow> getInboxPage(Cursor before, int limit) {
+        Long ownerId = currentUser().getId();
+        return before == null
+                ? conversationRepository.findRowsByOwnerIdBefore(ownerId, LATEST, Long.MAX_VALUE, PageRequest.ofSize(limit))
+                : conversationRepository.findRowsByOwnerIdBefore(ownerId, before.dateTimeKey(), before.id(), PageRequest.ofSize(limit));
+    }
+
+    @Transactional
+    public void markConversationRead(Long secondUserId) {
+        conversationRepository.markRead(currentUser().getId(), secondUserId);
+    }
+
+    private UserPostgres currentUser() {
         UserDetails currentUserDetails =
                 (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        UserPostgres currentUser = userService.loadUserByLogin(currentUserDetails.getUsername());
-
-        List<ChatMessage> sentMessages = chatMessageRepository.findAllByFirstUser(currentUser);
-        List<ChatMessage> receivedMessages = chatMessageRepository.findAllBySecondUser(currentUser);
+        return userService.loadUserByLogin(currentUserDetails.getUsername());
+    }
 
-        return Stream.concat(
-                sentMessages.stream().map(ChatMessage::getSecondUser),
-                receivedMessages.stream().map(ChatMessage::getFirstUser)
-        )
-        .distinct()
-        .map(u -> new UserController.UserProfileResponse(u.getId(), u.getLogin(), u.getEmail(), u.getNumber(), u.getCountry(), u.getCity()))
+    public List<UserController.UserProfileResponse> getActiveChatPartners() {
+        return conversationRepository.findPartnersByOwnerId(currentUser().getId()).stream()
+        .map(u -> new UserController.UserProfileResponse(u.getId(), u.getLogin(), u.getEmail(), u.getNumber(), u.getCountry(), u.getCity(), null))
         .collect(Collectors.toList());
     }
 }
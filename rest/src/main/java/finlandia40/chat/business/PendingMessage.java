@@ -0,0 +1,10 @@
+package finlandia40.chat.business;
+
+import java.time.LocalDateTime;
+
+/**
+ * A chat message that already has its id and timestamp and is waiting in the ingest queue to be written.
+ */
+public record PendingMessage(long id, Long senderId, Long receiverId, String content, LocalDateTime sent,
+                             String clientMessageId) {
+}
@@ -0,0 +1,8 @@
+package finlandia40.chat.business;
+
+/**
+ * A chat message as committed, with its number in the sender's and in the receiver's stream; the two are equal for a
+ * message to oneself.
+ */
+public record SequencedMessage(PendingMessage message, long senderSeq, long receiverSeq) {
+}
@@ -0,0 +1,42 @@
+package finlandia40.chat.data;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Brings chat data stored before the conversation key, the inbox table, block-allocated ids and delivery sequence
+ * numbers existed up to date. Runs once all beans are created and the schema is initialized, before the web server
+ * starts taking requests, so no request sees a message without its key or number, an empty inbox or an id sequence
+ * behind the stored ids.
+ */
+@Component
+public class ChatBackfill implements SmartInitializingSingleton {
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ConversationRepository conversationRepository;
+    private final ChatSequenceRepository chatSequenceRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public ChatBackfill(ChatMessageRepository chatMessageRepository,
+                        ConversationRepository conversationRepository,
+                        ChatSequenceRepository chatSequenceRepository,
+                        TransactionTemplate transactionTemplate) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.conversationRepository = conversationRepository;
+        this.chatSequenceRepository = chatSequenceRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        transactionTemplate.executeWithoutResult(status -> {
+            chatMessageRepository.alignIdSequence();
+            chatMessageRepository.backfillConversationKeys();
+            conversationRepository.backfillFromMessages();
+            if (chatMessageRepository.backfillSeqs() > 0) {
+                chatSequenceRepository.alignWithMessages();
+            }
+        });
+    }
+}
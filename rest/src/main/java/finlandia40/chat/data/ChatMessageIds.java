@@ -0,0 +1,55 @@
+package finlandia40.chat.data;
+
+import finlandia40.chat.model.ChatMessage;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands out chat message ids before the message is written, reserving them from the sequence in blocks.
+ * Follows the pooled layout Hibernate uses for the same sequence: a value {@code v} reserves {@code (v - ID_BLOCK, v]}.
+ * The following block is reserved ahead by {@link #prefetch}, so {@link #next} does not wait for the database while its
+ * caller holds a lock.
+ */
+@Component
+public class ChatMessageIds {
+
+    private static final long NONE = 0;
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final AtomicBoolean fetching = new AtomicBoolean();
+    private volatile long standby = NONE;
+    private long next = 1;
+    private long last = 0;
+
+    public ChatMessageIds(ChatMessageRepository chatMessageRepository) {
+        this.chatMessageRepository = chatMessageRepository;
+    }
+
+    /**
+     * Reserves the following block unless one is already waiting. Call it outside any lock.
+     */
+    public void prefetch() {
+        if (standby == NONE && fetching.compareAndSet(false, true)) {
+            try {
+                standby = chatMessageRepository.nextIdBlock();
+            } finally {
+                fetching.set(false);
+            }
+        }
+    }
+
+    public synchronized long next() {
+        if (next > last) {
+            long reserved = standby;
+            if (reserved != NONE) {
+                standby = NONE;
+                last = reserved;
+            } else {
+                last = chatMessageRepository.nextIdBlock();
+            }
+            next = Math.max(1, last - ChatMessage.ID_BLOCK + 1);
+        }
+        return next++;
+    }
+}
@@ -1,18 +1,123 @@
 package finlandia40.chat.data;
 
 import finlandia40.chat.model.ChatMessage;
-import finlandia40.user.model.UserPostgres;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
 
-    List<ChatMessage> findByFirstUserAndSecondUserOrFirstUserAndSecondUser(
-            UserPostgres firstUser1, UserPostgres secondUser1,
-            UserPostgres firstUser2, UserPostgres secondUser2);
+    @Query(ChatMessageRow.SELECT + "WHERE m.conversationKey = :conversationKey ORDER BY m.sent, m.id")
+    List<ChatMessageRow> findRowsByConversationKey(@Param("conversationKey") String conversationKey);
 
-    List<ChatMessage> findAllByFirstUser(UserPostgres firstUser);
-    List<ChatMessage> findAllBySecondUser(UserPostgres secondUser);
+    @Query(ChatMessageRow.SELECT + "WHERE m.conversationKey = :conversationKey " +
+            "AND (m.sent < :beforeSent OR (m.sent = :beforeSent AND m.id < :beforeId)) " +
+            "ORDER BY m.sent DESC, m.id DESC")
+    List<ChatMessageRow> findRowsByConversationKeyBefore(@Param("conversationKey") String conversationKey,
+                                                         @Param("beforeSent") LocalDateTime beforeSent,
+                                                         @Param("beforeId") long beforeId,
+                                                         Pageable pageable);
 
+    @Modifying
+    @Query(value = "UPDATE chat_message SET conversation_key = " +
+            "LEAST(first_user, second_user) || ':' || GREATEST(first_user, second_user) " +
+            "WHERE conversation_key IS NULL", nativeQuery = true)
+    int backfillConversationKeys();
+
+    /**
+     * Numbers stored messages that have none, per user in id order after the user's last number; a message to oneself
+     * takes one number for both sides. Follow it with {@link ChatSequenceRepository#alignWithMessages}.
+     */
+    @Modifying
+    @Query(value = "UPDATE chat_message m SET sender_seq = n.sender_seq, receiver_seq = coalesce(n.receiver_seq, n.sender_seq) " +
+            "FROM (SELECT id, max(seq) FILTER (WHERE sending) AS sender_seq, max(seq) FILTER (WHERE NOT sending) AS receiver_seq " +
+            "FROM (SELECT s.id, s.sending, coalesce(q.last_seq, 0) + row_number() OVER (PARTITION BY s.user_id ORDER BY s.id) AS seq " +
+            "FROM (SELECT id, first_user AS user_id, true AS sending FROM chat_message WHERE sender_seq IS NULL " +
+            "UNION ALL SELECT id, second_user, false FROM chat_message WHERE sender_seq IS NULL AND second_user <> first_user) s " +
+            "LEFT JOIN chat_sequence q ON q.user_id = s.user_id) numbered GROUP BY id) n " +
+            "WHERE m.id = n.id", nativeQuery = true)
+    int backfillSeqs();
+
+    String STREAM = "SELECT id AS \"id\", first_user AS \"senderId\", second_user AS \"receiverId\", message AS \"content\", " +
+            "sent AS \"sent\", seq AS \"seq\" FROM (";
+
+    /**
+     * The user's stream above {@code afterSeq}, oldest first: sent messages by the sender number, received ones by the
+     * receiver number, each half read from its own (user, seq) index.
+     */
+    @Query(value = STREAM +
+            "SELECT id, first_user, second_user, message, sent, sender_seq AS seq FROM chat_message " +
+            "WHERE first_user = :userId AND sender_seq > :afterSeq " +
+            "UNION ALL SELECT id, first_user, second_user, message, sent, receiver_seq FROM chat_message " +
+            "WHERE second_user = :userId AND first_user <> :userId AND receiver_seq > :afterSeq" +
+            ") s ORDER BY seq LIMIT :limit", nativeQuery = true)
+    List<ChatStreamRow> findStreamAfter(@Param("userId") Long userId,
+                                        @Param("afterSeq") long afterSeq,
+                                        @Param("limit") int limit);
+
+    @Query(value = STREAM +
+            "SELECT id, first_user, second_user, message, sent, sender_seq AS seq FROM chat_message " +
+            "WHERE first_user = :userId AND sender_seq > :afterSeq AND conversation_key = :conversationKey " +
+            "UNION ALL SELECT id, first_user, second_user, message, sent, receiver_seq FROM chat_message " +
+            "WHERE second_user = :userId AND first_user <> :userId AND receiver_seq > :afterSeq AND conversation_key = :conversationKey" +
+            ") s ORDER BY seq LIMIT :limit", nativeQuery = true)
+    List<ChatStreamRow> findStreamAfterInConversation(@Param("userId") Long userId,
+                                                      @Param("conversationKey") String conversationKey,
+                                                      @Param("afterSeq") long afterSeq,
+                                                      @Param("limit") int limit);
+
+    @Query(value = "SELECT nextval('chat_message_seq')", nativeQuery = true)
+    long nextIdBlock();
+
+    /**
+     * Moves the id sequence past messages stored while ids still came from an identity column.
+     */
+    @Query(value = "SELECT setval('chat_message_seq', m.max_id) FROM (SELECT max(id) AS max_id FROM chat_message) m " +
+            "WHERE m.max_id >= (SELECT last_value FROM chat_message_seq)", nativeQuery = true)
+    List<Long> alignIdSequence();
+
+    @Modifying
+    @Query(value = "INSERT INTO chat_message (id, first_user, second_user, sent, message, conversation_key, sender_seq, receiver_seq) " +
+            "SELECT * FROM unnest(CAST(:ids AS bigint[]), CAST(:senderIds AS bigint[]), CAST(:receiverIds AS bigint[]), " +
+            "CAST(:sent AS timestamp(6)[]), CAST(:contents AS varchar[]), CAST(:conversationKeys AS varchar[]), " +
+            "CAST(:senderSeqs AS bigint[]), CAST(:receiverSeqs AS bigint[]))", nativeQuery = true)
+    int insertAll(@Param("ids") Long[] ids,
+                  @Param("senderIds") Long[] senderIds,
+                  @Param("receiverIds") Long[] receiverIds,
+                  @Param("sent") LocalDateTime[] sent,
+                  @Param("contents") String[] contents,
+                  @Param("conversationKeys") String[] conversationKeys,
+                  @Param("senderSeqs") Long[] senderSeqs,
+                  @Param("receiverSeqs") Long[] receiverSeqs);
+
+    String SEARCH_HITS = "SELECT m.id AS \"id\", m.first_user AS \"senderId\", m.second_user AS \"receiverId\", m.sent AS \"sent\", " +
+            "ts_headline('simple', m.message, q.query, 'StartSel=«, StopSel=», MaxFragments=1, MinWords=6, MaxWords=18') AS \"snippet\" " +
+            "FROM chat_message m CROSS JOIN to_tsquery('simple', :query) AS q(query) WHERE m.id IN ";
+
+    /**
+     * Newest first below {@code beforeId}. The GIN index on search_vector and the per-user id indexes are combined,
+     * and the snippet is only built for the returned page.
+     */
+    @Query(value = SEARCH_HITS + "(SELECT id FROM chat_message " +
+            "WHERE (first_user = :userId OR second_user = :userId) AND id < :beforeId " +
+            "AND search_vector @@ to_tsquery('simple', :query) ORDER BY id DESC LIMIT :limit) " +
+            "ORDER BY m.id DESC", nativeQuery = true)
+    List<ChatSearchRow> searchByUserId(@Param("userId") Long userId,
+                                       @Param("query") String query,
+                                       @Param("beforeId") long beforeId,
+                                       @Param("limit") int limit);
+
+    @Query(value = SEARCH_HITS + "(SELECT id FROM chat_message " +
+            "WHERE conversation_key = :conversationKey AND id < :beforeId " +
+            "AND search_vector @@ to_tsquery('simple', :query) ORDER BY id DESC LIMIT :limit) " +
+            "ORDER BY m.id DESC", nativeQuery = true)
+    List<ChatSearchRow> searchByConversationKey(@Param("conversationKey") String conversationKey,
+                                                @Param("query") String query,
+                                                @Param("beforeId") long beforeId,
+                                                @Param("limit") int limit);
 }
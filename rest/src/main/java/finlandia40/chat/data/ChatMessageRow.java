@@ -0,0 +1,12 @@
+package finlandia40.chat.data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model for a chat message; user ids are read from the foreign keys, so neither user is loaded.
+ */
+public record ChatMessageRow(Long id, Long senderId, Long receiverId, String content, LocalDateTime sent) {
+
+    public static final String SELECT = "SELECT new finlandia40.chat.data.ChatMessageRow(m.id, m.firstUser.id, m.secondUser.id, m.message, m.sent) " +
+            "FROM ChatMessage m ";
+}
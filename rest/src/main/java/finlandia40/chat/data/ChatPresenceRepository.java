@@ -0,0 +1,42 @@
+package finlandia40.chat.data;
+
+import finlandia40.chat.model.ChatPresence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface ChatPresenceRepository extends JpaRepository<ChatPresence, ChatPresence.Key> {
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO chat_presence (user_id, node_id, seen_at) VALUES (:userId, :nodeId, :seenAt) " +
+            "ON CONFLICT (user_id, node_id) DO UPDATE SET seen_at = EXCLUDED.seen_at", nativeQuery = true)
+    int upsert(@Param("userId") Long userId, @Param("nodeId") String nodeId, @Param("seenAt") LocalDateTime seenAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ChatPresence p WHERE p.id.userId = :userId AND p.id.nodeId = :nodeId")
+    int remove(@Param("userId") Long userId, @Param("nodeId") String nodeId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ChatPresence p SET p.seenAt = :seenAt WHERE p.id.nodeId = :nodeId")
+    int touchNode(@Param("nodeId") String nodeId, @Param("seenAt") LocalDateTime seenAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ChatPresence p WHERE p.id.nodeId = :nodeId")
+    int removeNode(@Param("nodeId") String nodeId);
+
+    /**
+     * Drops sessions of nodes that stopped refreshing their rows, e.g. after a crash.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ChatPresence p WHERE p.seenAt < :before")
+    int removeStale(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,19 @@
+package finlandia40.chat.data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Search hit read by a native query; {@code snippet} is the matching fragment with the hits wrapped in « ».
+ */
+public interface ChatSearchRow {
+
+    Long getId();
+
+    Long getSenderId();
+
+    Long getReceiverId();
+
+    LocalDateTime getSent();
+
+    String getSnippet();
+}
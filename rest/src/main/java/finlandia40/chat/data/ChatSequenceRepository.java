@@ -0,0 +1,33 @@
+package finlandia40.chat.data;
+
+import finlandia40.chat.model.ChatSequence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ChatSequenceRepository extends JpaRepository<ChatSequence, Long> {
+
+    /**
+     * Takes the next {@code counts[i]} numbers of user {@code userIds[i]}'s stream and returns each user's new last
+     * number, so the batch owns {@code (lastSeq - count, lastSeq]}. The rows stay locked until the caller commits; they
+     * are taken in user id order, so two writers never wait on each other in a cycle. User ids must be distinct.
+     */
+    @Query(value = "INSERT INTO chat_sequence (user_id, last_seq) " +
+            "SELECT * FROM unnest(CAST(:userIds AS bigint[]), CAST(:counts AS bigint[])) AS r(user_id, n) ORDER BY user_id " +
+            "ON CONFLICT (user_id) DO UPDATE SET last_seq = chat_sequence.last_seq + EXCLUDED.last_seq " +
+            "RETURNING user_id, last_seq", nativeQuery = true)
+    List<ChatSequence> reserve(@Param("userIds") Long[] userIds, @Param("counts") Long[] counts);
+
+    /**
+     * Moves every user's counter past the numbers given to stored messages, e.g. after {@link ChatMessageRepository#backfillSeqs}.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO chat_sequence (user_id, last_seq) " +
+            "SELECT user_id, max(seq) FROM (SELECT first_user AS user_id, sender_seq AS seq FROM chat_message " +
+            "UNION ALL SELECT second_user, receiver_seq FROM chat_message) s WHERE seq IS NOT NULL GROUP BY user_id " +
+            "ON CONFLICT (user_id) DO UPDATE SET last_seq = GREATEST(chat_sequence.last_seq, EXCLUDED.last_seq)", nativeQuery = true)
+    int alignWithMessages();
+}
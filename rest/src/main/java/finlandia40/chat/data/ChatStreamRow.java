@@ -0,0 +1,21 @@
+package finlandia40.chat.data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A message as it appears in one user's stream, read by a native query; {@code seq} is its number in that stream.
+ */
+public interface ChatStreamRow {
+
+    Long getId();
+
+    Long getSenderId();
+
+    Long getReceiverId();
+
+    String getContent();
+
+    LocalDateTime getSent();
+
+    Long getSeq();
+}
@@ -0,0 +1,65 @@
+package finlandia40.chat.data;
+
+import finlandia40.chat.model.Conversation;
+import finlandia40.user.model.UserPostgres;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ConversationRepository extends JpaRepository<Conversation, Conversation.Key> {
+
+    /**
+     * Moves the owner's conversation with the partner to the given message. Messages committed out of order never
+     * roll the preview back, and the unread counter is added either way.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO conversation (owner_id, partner_id, last_message_id, last_message_at, last_message_preview, unread_count) " +
+            "VALUES (:ownerId, :partnerId, :messageId, :sentAt, :preview, :unread) " +
+            "ON CONFLICT (owner_id, partner_id) DO UPDATE SET " +
+            "last_message_id = GREATEST(conversation.last_message_id, EXCLUDED.last_message_id), " +
+            "last_message_at = CASE WHEN EXCLUDED.last_message_id > conversation.last_message_id " +
+            "THEN EXCLUDED.last_message_at ELSE conversation.last_message_at END, " +
+            "last_message_preview = CASE WHEN EXCLUDED.last_message_id > conversation.last_message_id " +
+            "THEN EXCLUDED.last_message_preview ELSE conversation.last_message_preview END, " +
+            "unread_count = conversation.unread_count + EXCLUDED.unread_count", nativeQuery = true)
+    int recordMessage(@Param("ownerId") Long ownerId,
+                      @Param("partnerId") Long partnerId,
+                      @Param("messageId") Long messageId,
+                      @Param("sentAt") LocalDateTime sentAt,
+                      @Param("preview") String preview,
+                      @Param("unread") int unread);
+
+    @Query(ConversationRow.SELECT + "WHERE c.id.ownerId = :ownerId " +
+            "AND (c.lastMessageAt < :beforeAt OR (c.lastMessageAt = :beforeAt AND c.id.partnerId < :beforePartnerId)) " +
+            "ORDER BY c.lastMessageAt DESC, c.id.partnerId DESC")
+    List<ConversationRow> findRowsByOwnerIdBefore(@Param("ownerId") Long ownerId,
+                                                  @Param("beforeAt") LocalDateTime beforeAt,
+                                                  @Param("beforePartnerId") long beforePartnerId,
+                                                  Pageable pageable);
+
+    @Query("SELECT u FROM Conversation c JOIN UserPostgres u ON u.id = c.id.partnerId " +
+            "WHERE c.id.ownerId = :ownerId ORDER BY c.lastMessageAt DESC, c.id.partnerId DESC")
+    List<UserPostgres> findPartnersByOwnerId(@Param("ownerId") Long ownerId);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.unreadCount = 0 WHERE c.id.ownerId = :ownerId AND c.id.partnerId = :partnerId")
+    int markRead(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId);
+
+    /**
+     * Builds the inbox from existing messages the first time the table is empty, e.g. right after it was introduced.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO conversation (owner_id, partner_id, last_message_id, last_message_at, last_message_preview, unread_count) " +
+            "SELECT DISTINCT ON (m.owner_id, m.partner_id) m.owner_id, m.partner_id, m.id, m.sent, left(m.message, " + Conversation.PREVIEW_LENGTH + "), 0 " +
+            "FROM (SELECT first_user AS owner_id, second_user AS partner_id, id, coalesce(sent, now()) AS sent, message FROM chat_message " +
+            "UNION ALL SELECT second_user, first_user, id, coalesce(sent, now()), message FROM chat_message) m " +
+            "WHERE NOT EXISTS (SELECT 1 FROM conversation) " +
+            "ORDER BY m.owner_id, m.partner_id, m.id DESC " +
+            "ON CONFLICT (owner_id, partner_id) DO NOTHING", nativeQuery = true)
+    int backfillFromMessages();
+}
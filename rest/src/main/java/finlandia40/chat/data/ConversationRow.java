@@ -0,0 +1,11 @@
+package finlandia40.chat.data;
+
+import java.time.LocalDateTime;
+
+public record ConversationRow(Long partnerId, String partnerLogin, String lastMessagePreview,
+                              LocalDateTime lastMessageAt, int unreadCount) {
+
+    public static final String SELECT = "SELECT new finlandia40.chat.data.ConversationRow(c.id.partnerId, u.login, " +
+            "c.lastMessagePreview, c.lastMessageAt, c.unreadCount) " +
+            "FROM Conversation c JOIN UserPostgres u ON u.id = c.id.partnerId ";
+}
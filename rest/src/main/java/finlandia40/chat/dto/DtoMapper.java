@@ -1,5 +1,8 @@
 package finlandia40.chat.dto;
 
+import finlandia40.chat.business.PendingMessage;
+import finlandia40.chat.data.ChatMessageRow;
+import finlandia40.chat.data.ChatStreamRow;
 import finlandia40.chat.model.ChatMessage;
 import org.springframework.stereotype.Component;
 
@@ -8,10 +11,42 @@ public class DtoMapper {
 
     public MessageDto convertChatMessageEntityToChatMessageDto(ChatMessage chatMessage) {
         return MessageDto.builder()
+                .id(chatMessage.getId())
                 .senderId(chatMessage.getFirstUser().getId())
                 .receiverId(chatMessage.getSecondUser().getId())
                 .content(chatMessage.getMessage())
                 .sent(chatMessage.getSent())
                 .build();
     }
+
+    public MessageDto convertChatMessageRowToChatMessageDto(ChatMessageRow row) {
+        return MessageDto.builder()
+                .id(row.id())
+                .senderId(row.senderId())
+                .receiverId(row.receiverId())
+                .content(row.content())
+                .sent(row.sent())
+                .build();
+    }
+
+    public MessageDto convertChatStreamRowToChatMessageDto(ChatStreamRow row) {
+        return MessageDto.builder()
+                .id(row.getId())
+                .senderId(row.getSenderId())
+                .receiverId(row.getReceiverId())
+                .content(row.getContent())
+                .sent(row.getSent())
+                .build();
+    }
+
+    public MessageDto convertPendingMessageToChatMessageDto(PendingMessage message) {
+        return MessageDto.builder()
+                .id(message.id())
+                .senderId(message.senderId())
+                .receiverId(message.receiverId())
+                .content(message.content())
+                .sent(message.sent())
+                .clientMessageId(message.clientMessageId())
+                .build();
+    }
 }
@@ -0,0 +1,13 @@
+package finlandia40.chat.dto;
+
+/**
+ * Sent to the sender on {@code /topic/acks/{senderId}}: ACCEPTED once the message is queued, PERSISTED once it is
+ * committed and broadcast, BUSY when the server could not take it and the client should retry,
+ * REJECTED when it was invalid or could not be stored.
+ */
+public record MessageAck(String clientMessageId, Long id, Status status) {
+
+    public enum Status {
+        ACCEPTED, PERSISTED, BUSY, REJECTED
+    }
+}
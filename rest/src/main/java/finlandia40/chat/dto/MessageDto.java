@@ -7,11 +7,13 @@ import java.time.LocalDateTime;
 
 @Builder
 public record MessageDto(
+        Long id,
         Long senderId,
         @NotNull
         Long receiverId,
         @NotBlank
         String content,
-        LocalDateTime sent
+        LocalDateTime sent,
+        String clientMessageId
 ) {
 }
@@ -13,10 +13,22 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(indexes = {
+        @Index(name = "idx_chat_conversation_sent", columnList = "conversation_key, sent, id"),
+        @Index(name = "idx_chat_sender_id", columnList = "first_user, id"),
+        @Index(name = "idx_chat_receiver_id", columnList = "second_user, id"),
+        @Index(name = "idx_chat_sender_seq", columnList = "first_user, sender_seq"),
+        @Index(name = "idx_chat_receiver_seq", columnList = "second_user, receiver_seq")
+})
 public class ChatMessage {
 
+    public static final int ID_BLOCK = 50;
+    public static final int MAX_CONTENT_LENGTH = 255;
+
+    // id rezerwowane blokami przez ChatMessageIds jeszcze przed zapisem
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_message_seq")
+    @SequenceGenerator(name = "chat_message_seq", sequenceName = "chat_message_seq", allocationSize = ID_BLOCK)
     private Long id;
 
     //pierwszy user-nadawca, drugi-odbiorca
@@ -31,7 +43,27 @@ public class ChatMessage {
     @Column
     private LocalDateTime sent;
 
-    @Column
+    @Column(length = MAX_CONTENT_LENGTH)
     private String message;
 
+    // uporzadkowana para id uzytkownikow, ta sama dla obu kierunkow rozmowy
+    @Column(length = 41)
+    private String conversationKey;
+
+    // pozycja wiadomosci w strumieniu nadawcy i odbiorcy (ChatSequence), nadawana przy zapisie; przy wiadomosci do siebie obie rowne
+    @Column
+    private Long senderSeq;
+
+    @Column
+    private Long receiverSeq;
+
+    // wyszukiwanie pelnotekstowe, liczone przez baze; 'simple' tylko zmienia wielkosc liter (brak polskiego slownika),
+    // wiec zapytania dopasowuja prefiksy slow; indeks GIN w schema.sql
+    @Column(insertable = false, updatable = false,
+            columnDefinition = "tsvector GENERATED ALWAYS AS (to_tsvector('simple', coalesce(message, ''))) STORED")
+    private String searchVector;
+
+    public static String conversationKey(Long userId, Long otherUserId) {
+        return Math.min(userId, otherUserId) + ":" + Math.max(userId, otherUserId);
+    }
 }
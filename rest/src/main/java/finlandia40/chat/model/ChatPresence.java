@@ -0,0 +1,40 @@
+package finlandia40.chat.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Which application node holds a chat session for a user; only used when nodes fan out through PostgreSQL.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@Table(indexes = @Index(name = "idx_chat_presence_node", columnList = "node_id"))
+public class ChatPresence {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(nullable = false)
+    private LocalDateTime seenAt;
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "user_id")
+        private Long userId;
+
+        @Column(name = "node_id", length = 32)
+        private String nodeId;
+    }
+}
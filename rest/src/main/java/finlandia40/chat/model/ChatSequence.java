@@ -0,0 +1,24 @@
+package finlandia40.chat.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Last delivery sequence number handed out for a user. Every message a user sends or receives takes the next number of
+ * that user's stream in the transaction that stores it, under this row's lock, so numbers grow in commit order across
+ * all nodes.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+public class ChatSequence {
+
+    @Id
+    private Long userId;
+
+    @Column(nullable = false)
+    private long lastSeq;
+}
@@ -0,0 +1,58 @@
+package finlandia40.chat.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Inbox entry: one row per user and chat partner, updated with every message so the inbox never scans messages.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@Table(indexes = @Index(name = "idx_conversation_owner_recent", columnList = "owner_id, last_message_at, partner_id"))
+public class Conversation {
+
+    public static final int PREVIEW_LENGTH = 200;
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(nullable = false)
+    private Long lastMessageId;
+
+    @Column(nullable = false)
+    private LocalDateTime lastMessageAt;
+
+    @Column(length = PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    @Column(nullable = false)
+    private int unreadCount;
+
+    public static String preview(String content) {
+        if (content == null || content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, PREVIEW_LENGTH - 1) + "\u2026";
+    }
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "owner_id")
+        private Long ownerId;
+
+        @Column(name = "partner_id")
+        private Long partnerId;
+    }
+}
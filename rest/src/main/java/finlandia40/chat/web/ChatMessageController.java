@@ -1,13 +1,19 @@
 package finlandia40.chat.web;
 
 import finlandia40.chat.business.ChatService;
+import finlandia40.chat.data.ChatMessageRow;
+import finlandia40.chat.data.ChatSearchRow;
+import finlandia40.chat.data.ConversationRow;
 import finlandia40.chat.dto.DtoMapper;
 import finlandia40.chat.dto.MessageDto;
+import finlandia40.common.Cursor;
+import finlandia40.common.CursorPage;
 import finlandia40.user.web.UserController;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -28,7 +34,47 @@ public class ChatMessageController {
     public List<MessageDto> getChatMessagesForTwoGivenUsers
             (@RequestParam @Valid Long secondUserId) {
         return chatService.getMessagesForTwoCertainUsers(secondUserId).stream()
-                .map(dtoMapper::convertChatMessageEntityToChatMessageDto).toList();
+                .map(dtoMapper::convertChatMessageRowToChatMessageDto).toList();
+    }
+
+    @GetMapping("/page")
+    @ResponseStatus(HttpStatus.OK)
+    public CursorPage<MessageDto> getChatMessagesPage(@RequestParam Long secondUserId,
+                                                      @RequestParam(required = false) String before,
+                                                      @RequestParam(required = false) Integer size) {
+        int pageSize = CursorPage.pageSize(size);
+        List<ChatMessageRow> messages = chatService.getMessagesPage(secondUserId, Cursor.decode(before), pageSize + 1);
+        return CursorPage.of(messages, pageSize, message -> Cursor.of(message.sent(), message.id()))
+                .map(dtoMapper::convertChatMessageRowToChatMessageDto);
+    }
+
+    @GetMapping("/search")
+    @ResponseStatus(HttpStatus.OK)
+    public CursorPage<MessageSearchResponse> searchMessages(@RequestParam String q,
+                                                            @RequestParam(required = false) Long secondUserId,
+                                                            @RequestParam(required = false) String before,
+                                                            @RequestParam(required = false) Integer size) {
+        int pageSize = CursorPage.pageSize(size);
+        List<ChatSearchRow> hits = chatService.searchMessages(q, secondUserId, Cursor.decode(before), pageSize + 1);
+        return CursorPage.of(hits, pageSize, hit -> Cursor.of(hit.getId()))
+                .map(hit -> new MessageSearchResponse(hit.getId(), hit.getSenderId(), hit.getReceiverId(), hit.getSent(), hit.getSnippet()));
+    }
+
+    @GetMapping("/inbox")
+    @ResponseStatus(HttpStatus.OK)
+    public CursorPage<ConversationResponse> getInbox(@RequestParam(required = false) String before,
+                                                     @RequestParam(required = false) Integer size) {
+        int pageSize = CursorPage.pageSize(size);
+        List<ConversationRow> conversations = chatService.getInboxPage(Cursor.decode(before), pageSize + 1);
+        return CursorPage.of(conversations, pageSize, conversation -> Cursor.of(conversation.lastMessageAt(), conversation.partnerId()))
+                .map(conversation -> new ConversationResponse(conversation.partnerId(), conversation.partnerLogin(),
+                        conversation.lastMessagePreview(), conversation.lastMessageAt(), conversation.unreadCount()));
+    }
+
+    @PostMapping("/read")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void markConversationRead(@RequestParam Long secondUserId) {
+        chatService.markConversationRead(secondUserId);
     }
 
     @GetMapping("/users")
@@ -36,4 +82,11 @@ public class ChatMessageController {
     public List<UserController.UserProfileResponse> getActiveChatPartners() {
         return chatService.getActiveChatPartners();
     }
+
+    public record ConversationResponse(Long partnerId, String partnerLogin, String lastMessagePreview,
+                                       LocalDateTime lastMessageAt, int unreadCount) {
+    }
+
+    public record MessageSearchResponse(Long id, Long senderId, Long receiverId, LocalDateTime sent, String snippet) {
+    }
 }
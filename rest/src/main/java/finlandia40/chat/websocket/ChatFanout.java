@@ -0,0 +1,57 @@
+package finlandia40.chat.websocket;
+
+import java.util.Map;
+
+/**
+ * Delivers per-user chat destinations ({@code /topic/{topic}/{userId}}) to every node that holds a session of the user.
+ * {@link ChatSessions} reports when the first session of a user appears on this node and when the last one goes away.
+ */
+public interface ChatFanout {
+
+    /**
+     * Marks frames a congested session may skip because a later frame carries the same information.
+     */
+    String DROPPABLE_HEADER = "x-droppable";
+
+    /**
+     * Id of the chat message a frame carries.
+     */
+    String MESSAGE_ID_HEADER = "message-id";
+
+    /**
+     * Number of the message in the receiving user's stream: what a client resumes from, and what hands over from resume
+     * replay to live delivery.
+     */
+    String MESSAGE_SEQ_HEADER = "message-seq";
+
+    Map<String, Object> DROPPABLE = Map.of(DROPPABLE_HEADER, "true");
+
+    /**
+     * Headers become STOMP native headers of the delivered MESSAGE frame.
+     */
+    void sendToUser(Long userId, String topic, Object payload, Map<String, Object> headers);
+
+    default void sendToUser(Long userId, String topic, Object payload) {
+        sendToUser(userId, topic, payload, Map.of());
+    }
+
+    /**
+     * Sends once the current transaction commits. Frames for the same user reach every node holding a session of the
+     * user in the order their transactions committed, whichever node committed them.
+     */
+    void sendToUserOnCommit(Long userId, String topic, Object payload, Map<String, Object> headers);
+
+    default void userConnected(Long userId) {
+    }
+
+    default void userDisconnected(Long userId) {
+    }
+
+    static String destination(String topic, Long userId) {
+        return "/topic/" + topic + "/" + userId;
+    }
+
+    static Map<String, Object> messageHeaders(long messageId, long seq) {
+        return Map.of(MESSAGE_ID_HEADER, Long.toString(messageId), MESSAGE_SEQ_HEADER, Long.toString(seq));
+    }
+}
@@ -0,0 +1,298 @@
+package finlandia40.chat.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import finlandia40.chat.business.ChatService;
+import finlandia40.chat.data.ChatStreamRow;
+import finlandia40.chat.dto.DtoMapper;
+import finlandia40.chat.dto.MessageDto;
+import finlandia40.user.business.UserService;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Catch-up on reconnect. A client subscribing to {@code /topic/messages/{ownId}} with a {@code last-seen-seq} header
+ * (or with the header sent on CONNECT) gets the messages it missed replayed on that subscription, oldest first,
+ * optionally for the conversation named in {@code resume-partner-id} only. The value is the {@code message-seq} of the
+ * last frame the client got, on any node: each user's messages are numbered in the transaction that stores them and
+ * broadcast as it commits, so every node sends them in number order (see {@link finlandia40.chat.business.ChatIngest}).
+ * <p>
+ * Hand-over: the subscription is tracked from before the broker registers it, so every live frame that reaches it is
+ * known. Replay then reads the database, skips what already went out live, and live frames for messages that were
+ * replayed are dropped. A message committed after that read is numbered above every replayed one, so the first live
+ * frame above the highest replayed number ends the hand-over. At most
+ * {@code chat.resume.max-messages} are replayed; the last frame then carries {@code resume-more: true} and the client
+ * subscribes again from there.
+ * <p>
+ * Ordering: the outbound channel runs on several threads and keeps a session's frames in order only for what the broker
+ * sends through its own per-session decorator. A resumed subscription therefore gets an ordered channel of its own that
+ * carries the replay and, from the subscribe on, every live frame of that subscription: live frames that arrive before
+ * the replay are held and sent merged with it in number order, later ones are moved over from the broker's path as they
+ * pass. The subscription keeps that channel until it is unsubscribed or its session closes.
+ */
+@Component
+public class ChatResume implements ExecutorChannelInterceptor {
+
+    public static final String LAST_SEEN_HEADER = "last-seen-seq";
+    public static final String PARTNER_HEADER = "resume-partner-id";
+    public static final String REPLAY_HEADER = "replay";
+    public static final String MORE_HEADER = "resume-more";
+
+    private static final Pattern MESSAGES_DESTINATION = Pattern.compile("/topic/messages/(\\d+)");
+    // non-native, so never written to the client: marks frames already on a subscription's ordered channel
+    private static final String ORDERED_HEADER = "chatResumeOrdered";
+    private static final Log log = LogFactory.getLog(ChatResume.class);
+
+    private final ChatService chatService;
+    private final UserService userService;
+    private final DtoMapper dtoMapper;
+    private final ObjectMapper objectMapper;
+    private final MessageChannel clientOutboundChannel;
+    private final int maxMessages;
+    private final Map<String, Handover> handovers = new ConcurrentHashMap<>();
+
+    public ChatResume(ChatService chatService,
+                      UserService userService,
+                      DtoMapper dtoMapper,
+                      ObjectMapper objectMapper,
+                      @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                      @Value("${chat.resume.max-messages:200}") int maxMessages) {
+        this.chatService = chatService;
+        this.userService = userService;
+        this.dtoMapper = dtoMapper;
+        this.objectMapper = objectMapper;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Inbound: remembers the CONNECT header and starts tracking a resuming subscription before the broker sees it.
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            String lastSeen = accessor.getFirstNativeHeader(LAST_SEEN_HEADER);
+            if (lastSeen != null && accessor.getSessionAttributes() != null) {
+                accessor.getSessionAttributes().put(LAST_SEEN_HEADER, lastSeen);
+            }
+        } else if (StompCommand.SUBSCRIBE.equals(accessor.getCommand()) && resumeRequest(accessor) != null) {
+            handovers.put(key(accessor.getSessionId(), accessor.getSubscriptionId()),
+                    new Handover(new OrderedMessageChannelDecorator(clientOutboundChannel, log)));
+        } else if (StompCommand.UNSUBSCRIBE.equals(accessor.getCommand())) {
+            handovers.remove(key(accessor.getSessionId(), accessor.getSubscriptionId()));
+        }
+        return message;
+    }
+
+    /**
+     * Called for every closed session, including sockets that dropped without a DISCONNECT frame.
+     */
+    public void sessionClosed(String sessionId) {
+        handovers.keySet().removeIf(key -> key.startsWith(sessionId + ":"));
+    }
+
+    /**
+     * Inbound: replays once the broker has registered the subscription, so nothing sent after this point is missed.
+     */
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (!(handler instanceof SimpleBrokerMessageHandler)) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        if (!StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            return;
+        }
+        Handover handover = handovers.get(key(accessor.getSessionId(), accessor.getSubscriptionId()));
+        if (handover == null) {
+            return;
+        }
+        ResumeRequest request = resumeRequest(accessor);
+        boolean resumable = request != null && ex == null && ownsDestination(accessor, request.userId());
+        // an empty replay still releases the live frames held so far, in order
+        replay(accessor, resumable ? request : null, handover);
+    }
+
+    private void replay(StompHeaderAccessor subscription, ResumeRequest request, Handover handover) {
+        List<ChatStreamRow> missed = request == null ? List.of()
+                : chatService.getStreamAfter(request.userId(), request.partnerId(), request.afterSeq(), maxMessages + 1);
+        boolean more = missed.size() > maxMessages;
+        List<ChatStreamRow> page = missed.stream().limit(maxMessages).toList();
+        synchronized (handover) {
+            page.forEach(row -> handover.replayed(row.getSeq()));
+            TreeMap<Long, Message<?>> frames = new TreeMap<>(handover.held);
+            List<ChatStreamRow> unseen = page.stream().filter(row -> !handover.live.contains(row.getSeq())).toList();
+            for (int i = 0; i < unseen.size(); i++) {
+                frames.put(unseen.get(i).getSeq(), replayFrame(subscription, unseen.get(i), more && i == unseen.size() - 1));
+            }
+            frames.values().forEach(handover.channel::send);
+            handover.finish();
+        }
+    }
+
+    private Message<byte[]> replayFrame(StompHeaderAccessor subscription, ChatStreamRow row, boolean more) {
+        MessageDto dto = dtoMapper.convertChatStreamRowToChatMessageDto(row);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(subscription.getSessionId());
+        accessor.setSubscriptionId(subscription.getSubscriptionId());
+        accessor.setDestination(subscription.getDestination());
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setNativeHeader(ChatFanout.MESSAGE_ID_HEADER, Long.toString(dto.id()));
+        accessor.setNativeHeader(ChatFanout.MESSAGE_SEQ_HEADER, Long.toString(row.getSeq()));
+        accessor.setNativeHeader(REPLAY_HEADER, "true");
+        if (more) {
+            accessor.setNativeHeader(MORE_HEADER, "true");
+        }
+        accessor.setHeader(ORDERED_HEADER, Boolean.TRUE);
+        // the ordered channel attaches its next-message task to the headers
+        accessor.setLeaveMutable(true);
+        try {
+            return MessageBuilder.createMessage(objectMapper.writeValueAsBytes(dto), accessor.getMessageHeaders());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize chat message " + dto.id(), e);
+        }
+    }
+
+    /**
+     * Outbound: moves live frames of a resumed subscription onto its ordered channel, holding them until the replay has
+     * been sent and dropping those that were replayed.
+     */
+    public ChannelInterceptor liveFilter() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                if (handovers.isEmpty()) {
+                    return message;
+                }
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+                if (accessor.getMessageType() != SimpMessageType.MESSAGE || accessor.getHeader(ORDERED_HEADER) != null) {
+                    return message;
+                }
+                String seq = accessor.getFirstNativeHeader(ChatFanout.MESSAGE_SEQ_HEADER);
+                Handover handover = seq != null ? handovers.get(key(accessor.getSessionId(), accessor.getSubscriptionId())) : null;
+                if (handover == null) {
+                    return message;
+                }
+                accessor.setHeader(ORDERED_HEADER, Boolean.TRUE);
+                accessor.setLeaveMutable(true);
+                handover.live(Long.parseLong(seq), MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders()));
+                return null;
+            }
+        };
+    }
+
+    private ResumeRequest resumeRequest(StompHeaderAccessor accessor) {
+        if (accessor.getDestination() == null) {
+            return null;
+        }
+        Matcher matcher = MESSAGES_DESTINATION.matcher(accessor.getDestination());
+        if (!matcher.matches()) {
+            return null;
+        }
+        String lastSeen = accessor.getFirstNativeHeader(LAST_SEEN_HEADER);
+        if (lastSeen == null && accessor.getSessionAttributes() != null) {
+            lastSeen = (String) accessor.getSessionAttributes().get(LAST_SEEN_HEADER);
+        }
+        String partner = accessor.getFirstNativeHeader(PARTNER_HEADER);
+        try {
+            return lastSeen == null ? null : new ResumeRequest(Long.valueOf(matcher.group(1)),
+                    partner != null ? Long.valueOf(partner) : null, Long.parseLong(lastSeen));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private boolean ownsDestination(StompHeaderAccessor accessor, Long userId) {
+        return accessor.getUser() != null
+                && userId.equals(userService.loadUserByLogin(accessor.getUser().getName()).getId());
+    }
+
+    private static String key(String sessionId, String subscriptionId) {
+        return sessionId + ":" + subscriptionId;
+    }
+
+    private record ResumeRequest(Long userId, Long partnerId, long afterSeq) {
+    }
+
+    private static class Handover {
+
+        private final MessageChannel channel;
+        private final SortedMap<Long, Message<?>> held = new TreeMap<>();
+        private final Set<Long> live = new HashSet<>();
+        private final Set<Long> replayed = new HashSet<>();
+        private long maxReplayed = Long.MIN_VALUE;
+        private boolean done;
+        private boolean handedOver;
+
+        Handover(MessageChannel channel) {
+            this.channel = channel;
+        }
+
+        void replayed(long seq) {
+            replayed.add(seq);
+            maxReplayed = Math.max(maxReplayed, seq);
+        }
+
+        synchronized void live(long seq, Message<?> frame) {
+            if (handedOver) {
+                channel.send(frame);
+                return;
+            }
+            if (replayed.contains(seq)) {
+                return;
+            }
+            live.add(seq);
+            if (!done) {
+                held.put(seq, frame);
+                return;
+            }
+            channel.send(frame);
+            if (seq > maxReplayed) {
+                handOver();
+            }
+        }
+
+        void finish() {
+            done = true;
+            held.clear();
+            if (replayed.isEmpty() || live.stream().anyMatch(seq -> seq > maxReplayed)) {
+                handOver();
+            }
+        }
+
+        // no replayed number can arrive live any more; only the ordering is still needed
+        private void handOver() {
+            handedOver = true;
+            live.clear();
+            replayed.clear();
+        }
+    }
+}
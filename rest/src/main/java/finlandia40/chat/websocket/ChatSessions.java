@@ -0,0 +1,79 @@
+package finlandia40.chat.websocket;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks which users have a subscription to one of their per-user destinations on this node.
+ */
+@Component
+public class ChatSessions {
+
+    private static final Pattern USER_DESTINATION = Pattern.compile("/topic/(messages|acks)/(\\d+)");
+
+    private final ChatFanout chatFanout;
+    private final ChatResume chatResume;
+    private final Map<String, Map<String, Long>> subscriptionsBySession = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> subscriptionsByUser = new ConcurrentHashMap<>();
+
+    public ChatSessions(ChatFanout chatFanout, ChatResume chatResume) {
+        this.chatFanout = chatFanout;
+        this.chatResume = chatResume;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getDestination() == null || accessor.getSessionId() == null) {
+            return;
+        }
+        Matcher matcher = USER_DESTINATION.matcher(accessor.getDestination());
+        if (!matcher.matches()) {
+            return;
+        }
+        Long userId = Long.valueOf(matcher.group(2));
+        subscriptionsBySession.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), userId);
+        synchronized (this) {
+            if (subscriptionsByUser.merge(userId, 1, Integer::sum) == 1) {
+                chatFanout.userConnected(userId);
+            }
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, Long> subscriptions = subscriptionsBySession.get(accessor.getSessionId());
+        if (subscriptions != null && accessor.getSubscriptionId() != null) {
+            Long userId = subscriptions.remove(accessor.getSubscriptionId());
+            if (userId != null) {
+                release(userId);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        chatResume.sessionClosed(event.getSessionId());
+        Map<String, Long> subscriptions = subscriptionsBySession.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    private synchronized void release(Long userId) {
+        if (subscriptionsByUser.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null) == null) {
+            chatFanout.userDisconnected(userId);
+        }
+    }
+}
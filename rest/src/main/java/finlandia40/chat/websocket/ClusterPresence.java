@@ -0,0 +1,131 @@
+package finlandia40.chat.websocket;
+
+import finlandia40.chat.data.ChatPresenceRepository;
+import finlandia40.chat.model.ChatPresence;
+import finlandia40.common.PostgresNotifications;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which other nodes hold a session of a user, kept in memory so a send does not query chat_presence. Every change to
+ * the table is followed by a NOTIFY on {@link #CHANNEL}; all changes are applied on the listener thread, which reloads
+ * the whole table after each (re)connect and whenever this node's heartbeat asks it to. Rows read by a reload were
+ * committed before it, and later changes arrive as notifications after it, so nothing is missed; applying a change
+ * twice is harmless. The reload also drops the sessions of nodes that crashed and were removed as stale.
+ */
+@Component
+@Profile("chat-cluster")
+class ClusterPresence implements PostgresNotifications.Handler {
+
+    static final String CHANNEL = "chat_presence";
+
+    private final ChatPresenceRepository presenceRepository;
+    private final PostgresNotifications notifications;
+    private final String nodeId;
+    private final Duration presenceTtl;
+    // replaced and changed by the listener thread only
+    private volatile Map<Long, Set<String>> remoteNodes = new ConcurrentHashMap<>();
+
+    ClusterPresence(ChatPresenceRepository presenceRepository,
+                    PostgresNotifications notifications,
+                    @Value("${chat.cluster.presence-ttl-ms:90000}") long presenceTtlMs) {
+        this.presenceRepository = presenceRepository;
+        this.notifications = notifications;
+        this.nodeId = notifications.nodeId();
+        this.presenceTtl = Duration.ofMillis(presenceTtlMs);
+        notifications.listen(CHANNEL, this);
+    }
+
+    /**
+     * Other nodes the user holds a session on.
+     */
+    Set<String> remoteNodes(Long userId) {
+        return remoteNodes.getOrDefault(userId, Set.of());
+    }
+
+    void userConnected(Long userId) {
+        presenceRepository.upsert(userId, nodeId, LocalDateTime.now());
+        notifications.send(CHANNEL, "+ " + userId + " " + nodeId);
+    }
+
+    void userDisconnected(Long userId) {
+        presenceRepository.remove(userId, nodeId);
+        notifications.send(CHANNEL, "- " + userId + " " + nodeId);
+    }
+
+    void nodeStopped() {
+        presenceRepository.removeNode(nodeId);
+        notifications.send(CHANNEL, "x " + nodeId);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.cluster.heartbeat-ms:30000}")
+    public void heartbeat() {
+        LocalDateTime now = LocalDateTime.now();
+        presenceRepository.touchNode(nodeId, now);
+        presenceRepository.removeStale(now.minus(presenceTtl));
+        notifications.send(CHANNEL, "reload " + nodeId);
+    }
+
+    @Override
+    public void connected() {
+        reload();
+    }
+
+    /**
+     * Payloads: {@code + user node}, {@code - user node}, {@code x node} and {@code reload node}.
+     */
+    @Override
+    public void notified(String payload) {
+        String[] parts = payload.split(" ");
+        switch (parts[0]) {
+            case "+" -> {
+                if (parts.length == 3 && !parts[2].equals(nodeId)) {
+                    remoteNodes.computeIfAbsent(Long.valueOf(parts[1]), id -> ConcurrentHashMap.newKeySet()).add(parts[2]);
+                }
+            }
+            case "-" -> {
+                if (parts.length == 3) {
+                    remove(Long.valueOf(parts[1]), parts[2]);
+                }
+            }
+            case "x" -> {
+                if (parts.length == 2) {
+                    remoteNodes.keySet().forEach(userId -> remove(userId, parts[1]));
+                }
+            }
+            case "reload" -> {
+                if (parts.length == 2 && parts[1].equals(nodeId)) {
+                    reload();
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void remove(Long userId, String node) {
+        remoteNodes.computeIfPresent(userId, (id, nodes) -> {
+            nodes.remove(node);
+            return nodes.isEmpty() ? null : nodes;
+        });
+    }
+
+    private void reload() {
+        Map<Long, Set<String>> loaded = new ConcurrentHashMap<>();
+        for (ChatPresence presence : presenceRepository.findAll()) {
+            if (!presence.getId().getNodeId().equals(nodeId)) {
+                loaded.computeIfAbsent(presence.getId().getUserId(), id -> ConcurrentHashMap.newKeySet())
+                        .add(presence.getId().getNodeId());
+            }
+        }
+        remoteNodes = loaded;
+    }
+}
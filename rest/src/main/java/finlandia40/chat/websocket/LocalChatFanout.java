@@ -0,0 +1,33 @@
+package finlandia40.chat.websocket;
+
+import finlandia40.common.AfterCommit;
+import org.springframework.context.annotation.Profile;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Single node: the in-memory broker already knows every subscriber. Messages are committed by the one ingest writer
+ * thread, which also runs the after-commit sends, so they leave in commit order.
+ */
+@Component
+@Profile("!chat-cluster")
+public class LocalChatFanout implements ChatFanout {
+
+    private final SimpMessagingTemplate simpMessagingTemplate;
+
+    public LocalChatFanout(SimpMessagingTemplate simpMessagingTemplate) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+    }
+
+    @Override
+    public void sendToUser(Long userId, String topic, Object payload, Map<String, Object> headers) {
+        simpMessagingTemplate.convertAndSend(ChatFanout.destination(topic, userId), payload, headers);
+    }
+
+    @Override
+    public void sendToUserOnCommit(Long userId, String topic, Object payload, Map<String, Object> headers) {
+        AfterCommit.run(() -> sendToUser(userId, topic, payload, headers));
+    }
+}
@@ -0,0 +1,131 @@
+package finlandia40.chat.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds what a single client can have queued on the outbound side. A frame counts as queued from the moment it enters
+ * the client outbound channel until it is written to the socket, so the depth covers both the channel executor and the
+ * session send buffer. Past the coalescing threshold frames marked droppable are skipped; past the limit the session is
+ * closed, so one stalled phone cannot hold on to server memory.
+ */
+@Component
+public class OutboundSessionGuard implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private final Map<String, Tracked> sessions = new ConcurrentHashMap<>();
+    private final int maxQueued;
+    private final int coalesceAbove;
+    private final DistributionSummary depth;
+    private final Counter coalesced;
+    private final Counter evicted;
+
+    public OutboundSessionGuard(MeterRegistry meterRegistry,
+                                @Value("${chat.ws.outbound.max-queued-frames:500}") int maxQueued,
+                                @Value("${chat.ws.outbound.coalesce-above-frames:50}") int coalesceAbove) {
+        this.maxQueued = maxQueued;
+        this.coalesceAbove = coalesceAbove;
+        this.depth = DistributionSummary.builder("chat.ws.outbound.queue.depth")
+                .description("Frames queued for the receiving session when another one is added")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("chat.ws.outbound.dropped").tag("reason", "coalesced").register(meterRegistry);
+        this.evicted = Counter.builder("chat.ws.sessions.evicted").register(meterRegistry);
+        Gauge.builder("chat.ws.sessions", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.queue.max", sessions, tracked -> tracked.values().stream()
+                .mapToInt(session -> session.queued.get()).max().orElse(0)).register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        Tracked tracked = sessionId != null ? sessions.get(sessionId) : null;
+        if (tracked == null) {
+            return message;
+        }
+        int queued = tracked.queued.get();
+        depth.record(queued);
+        if (queued >= maxQueued) {
+            evict(tracked);
+            return null;
+        }
+        if (queued >= coalesceAbove && isDroppable(message)) {
+            coalesced.increment();
+            return null;
+        }
+        tracked.queued.incrementAndGet();
+        return message;
+    }
+
+    private static boolean isDroppable(Message<?> message) {
+        return "true".equals(SimpMessageHeaderAccessor.wrap(message).getFirstNativeHeader(ChatFanout.DROPPABLE_HEADER));
+    }
+
+    private void evict(Tracked tracked) {
+        if (sessions.remove(tracked.session.getId()) == null) {
+            return;
+        }
+        evicted.increment();
+        try {
+            tracked.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            // the transport is already gone, nothing left to release
+        }
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                Tracked tracked = new Tracked(session);
+                sessions.put(session.getId(), tracked);
+                super.afterConnectionEstablished(new WebSocketSessionDecorator(session) {
+                    @Override
+                    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                        try {
+                            super.sendMessage(message);
+                        } finally {
+                            tracked.queued.updateAndGet(queued -> Math.max(0, queued - 1));
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private static class Tracked {
+
+        private final WebSocketSession session;
+        private final AtomicInteger queued = new AtomicInteger();
+
+        Tracked(WebSocketSession session) {
+            this.session = session;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package finlandia40.chat.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import finlandia40.common.PostgresNotifications;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Several nodes behind a load balancer. Every node LISTENs on its own channel and records in chat_presence which users
+ * hold a session on it; a per-user send is delivered locally when the user is here and NOTIFYed only to the other nodes
+ * listed for that user in {@link ClusterPresence}. The notification carries the destination, the frame headers and the
+ * already serialized JSON body. Chat messages are NOTIFYed from the transaction that stores them, to this node as well,
+ * so that every node hands them to its broker in commit order.
+ */
+@Component
+@Profile("chat-cluster")
+public class PostgresChatFanout implements ChatFanout, SmartLifecycle {
+
+    private final Set<Long> localUsers = ConcurrentHashMap.newKeySet();
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final ClusterPresence presence;
+    private final PostgresNotifications notifications;
+    private final String nodeId;
+    private final ObjectMapper objectMapper;
+    private final Counter sent;
+    private final Counter received;
+    private final Counter dropped;
+    private volatile boolean running;
+
+    public PostgresChatFanout(SimpMessagingTemplate simpMessagingTemplate,
+                              ClusterPresence presence,
+                              PostgresNotifications notifications,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.presence = presence;
+        this.notifications = notifications;
+        this.nodeId = notifications.nodeId();
+        this.objectMapper = objectMapper;
+        this.sent = Counter.builder("chat.fanout.remote").tag("direction", "sent").register(meterRegistry);
+        this.received = Counter.builder("chat.fanout.remote").tag("direction", "received").register(meterRegistry);
+        this.dropped = Counter.builder("chat.fanout.remote").tag("direction", "dropped").register(meterRegistry);
+        // messages NOTIFYed while the listener reconnects are lost; clients catch up through resume or the history endpoints
+        notifications.listen(channel(nodeId), this::deliver);
+    }
+
+    @Override
+    public void sendToUser(Long userId, String topic, Object payload, Map<String, Object> headers) {
+        String destination = ChatFanout.destination(topic, userId);
+        if (localUsers.contains(userId)) {
+            simpMessagingTemplate.convertAndSend(destination, payload, headers);
+        }
+        String notification = null;
+        for (String node : presence.remoteNodes(userId)) {
+            if (notification == null) {
+                notification = notification(destination, headers, payload);
+            }
+            notifyNode(node, notification);
+        }
+    }
+
+    /**
+     * PostgreSQL delivers notifications when the sending transaction commits, in commit order, so a frame sent here
+     * never overtakes one committed earlier on another node. Local sessions get it through this node's own channel for
+     * the same reason.
+     */
+    @Override
+    public void sendToUserOnCommit(Long userId, String topic, Object payload, Map<String, Object> headers) {
+        String notification = notification(ChatFanout.destination(topic, userId), headers, payload);
+        if (localUsers.contains(userId)) {
+            notifyNode(nodeId, notification);
+        }
+        for (String node : presence.remoteNodes(userId)) {
+            notifyNode(node, notification);
+        }
+    }
+
+    @Override
+    public void userConnected(Long userId) {
+        localUsers.add(userId);
+        presence.userConnected(userId);
+    }
+
+    @Override
+    public void userDisconnected(Long userId) {
+        localUsers.remove(userId);
+        presence.userDisconnected(userId);
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize chat payload", e);
+        }
+    }
+
+    private String notification(String destination, Map<String, Object> headers, Object payload) {
+        return destination + "\n" + encodeHeaders(headers) + "\n" + toJson(payload);
+    }
+
+    private void notifyNode(String node, String notification) {
+        if (notifications.send(channel(node), notification)) {
+            sent.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    private static String encodeHeaders(Map<String, Object> headers) {
+        StringJoiner encoded = new StringJoiner("&");
+        headers.forEach((name, value) -> encoded.add(URLEncoder.encode(name, StandardCharsets.UTF_8) + "="
+                + URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8)));
+        return encoded.toString();
+    }
+
+    /**
+     * Notification layout: destination, then URL-encoded native headers, then the JSON body, separated by line breaks.
+     */
+    private void deliver(String notification) {
+        int destinationEnd = notification.indexOf('\n');
+        int headersEnd = destinationEnd < 0 ? -1 : notification.indexOf('\n', destinationEnd + 1);
+        if (headersEnd < 0) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        for (String header : notification.substring(destinationEnd + 1, headersEnd).split("&")) {
+            int equals = header.indexOf('=');
+            if (equals > 0) {
+                accessor.setNativeHeader(URLDecoder.decode(header.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(header.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        accessor.setLeaveMutable(true);
+        byte[] body = notification.substring(headersEnd + 1).getBytes(StandardCharsets.UTF_8);
+        simpMessagingTemplate.send(notification.substring(0, destinationEnd),
+                MessageBuilder.createMessage(body, accessor.getMessageHeaders()));
+        received.increment();
+    }
+
+    private static String channel(String node) {
+        return "chat_node_" + node;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        presence.nodeStopped();
+        localUsers.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the chat ingest writer, which still sends acks while it flushes.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1;
+    }
+}
@@ -2,8 +2,10 @@ package finlandia40.chat.websocket;
 
 import finlandia40.security.JwtService;
 import finlandia40.user.business.UserService;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
@@ -12,37 +14,109 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
-@RequiredArgsConstructor
 class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final JwtService jwtService;
     private final UserService userService;
+    private final OutboundSessionGuard outboundSessionGuard;
+    private final ChatResume chatResume;
+    private final TaskScheduler heartbeatScheduler;
+    private final long heartbeatMs;
+    private final int sendTimeLimitMs;
+    private final int sendBufferBytes;
+    private final int messageSizeLimitBytes;
+    private final int sockJsMessageCacheSize;
+    private final int inboundThreads;
+    private final int inboundQueueCapacity;
+    private final int outboundThreads;
+    private final int outboundQueueCapacity;
+
+    WebSocketConfig(JwtService jwtService,
+                    UserService userService,
+                    OutboundSessionGuard outboundSessionGuard,
+                    ChatResume chatResume,
+                    @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler heartbeatScheduler,
+                    @Value("${chat.ws.heartbeat-ms:20000}") long heartbeatMs,
+                    @Value("${chat.ws.send-time-limit-ms:10000}") int sendTimeLimitMs,
+                    @Value("${chat.ws.send-buffer-bytes:262144}") int sendBufferBytes,
+                    @Value("${chat.ws.message-size-limit-bytes:65536}") int messageSizeLimitBytes,
+                    @Value("${chat.ws.sockjs.http-message-cache-size:100}") int sockJsMessageCacheSize,
+                    @Value("${chat.ws.inbound.threads:8}") int inboundThreads,
+                    @Value("${chat.ws.inbound.queue-capacity:1000}") int inboundQueueCapacity,
+                    @Value("${chat.ws.outbound.threads:8}") int outboundThreads,
+                    @Value("${chat.ws.outbound.queue-capacity:5000}") int outboundQueueCapacity) {
+        this.jwtService = jwtService;
+        this.userService = userService;
+        this.outboundSessionGuard = outboundSessionGuard;
+        this.chatResume = chatResume;
+        this.heartbeatScheduler = heartbeatScheduler;
+        this.heartbeatMs = heartbeatMs;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.sendBufferBytes = sendBufferBytes;
+        this.messageSizeLimitBytes = messageSizeLimitBytes;
+        this.sockJsMessageCacheSize = sockJsMessageCacheSize;
+        this.inboundThreads = inboundThreads;
+        this.inboundQueueCapacity = inboundQueueCapacity;
+        this.outboundThreads = outboundThreads;
+        this.outboundQueueCapacity = outboundQueueCapacity;
+    }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/chat-socket")
                 .setAllowedOriginPatterns("*")
-                .withSockJS();
+                .withSockJS()
+                .setHeartbeatTime(heartbeatMs)
+                .setHttpMessageCacheSize(sockJsMessageCacheSize);
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic");
+        registry.enableSimpleBroker("/topic")
+                .setHeartbeatValue(new long[]{heartbeatMs, heartbeatMs})
+                .setTaskScheduler(heartbeatScheduler);
         registry.setApplicationDestinationPrefixes("/api");
+        registry.setPreservePublishOrder(true);
+    }
+
+    /**
+     * A session whose send buffer or a single send goes over the limit is closed instead of buffering without bound.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferBytes)
+                .setMessageSizeLimit(messageSizeLimitBytes)
+                .addDecoratorFactory(outboundSessionGuard);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundThreads)
+                .maxPoolSize(outboundThreads)
+                .queueCapacity(outboundQueueCapacity);
+        registration.interceptors(chatResume.liveFilter(), outboundSessionGuard);
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(inboundThreads)
+                .maxPoolSize(inboundThreads)
+                .queueCapacity(inboundQueueCapacity);
         registration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -68,6 +142,6 @@ class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 }
                 return message;
             }
-        });
+        }, chatResume);
     }
 }
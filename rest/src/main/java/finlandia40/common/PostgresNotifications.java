@@ -0,0 +1,151 @@
+package finlandia40.common;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LISTEN/NOTIFY between the nodes of a cluster. One pooled connection stays checked out and listens on every channel
+ * registered through {@link #listen}; handlers run on the listener thread, so they must not block. Notifications sent
+ * while the listener reconnects are lost, which is why every handler is told when the connection is (re)established.
+ */
+@Component
+@Profile("chat-cluster")
+public class PostgresNotifications implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresNotifications.class);
+
+    // NOTIFY payloads are limited to 8000 bytes
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final int LISTEN_POLL_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 2000;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean running;
+    private Thread listener;
+
+    public PostgresNotifications(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Registers the handler of a channel. Call it while the context starts, before the listener connects.
+     */
+    public void listen(String channel, Handler handler) {
+        handlers.put(channel, handler);
+    }
+
+    /**
+     * Returns false, without sending anything, when the payload exceeds the NOTIFY limit.
+     */
+    public boolean send(String channel, String payload) {
+        if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            return false;
+        }
+        jdbcTemplate.execute("SELECT pg_notify(?, ?)", (PreparedStatementCallback<Boolean>) statement -> {
+            statement.setString(1, channel);
+            statement.setString(2, payload);
+            return statement.execute();
+        });
+        return true;
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    for (String channel : handlers.keySet()) {
+                        statement.execute("LISTEN " + channel);
+                    }
+                }
+                handlers.values().forEach(Handler::connected);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(LISTEN_POLL_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            Handler handler = handlers.get(notification.getName());
+                            if (handler != null) {
+                                handler.notified(notification.getParameter());
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.warn("Notification listener failed, reconnecting", e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        listener = new Thread(this::listenLoop, "pg-notification-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            listener.join(LISTEN_POLL_MS * 4L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the chat ingest writer, which still sends acks while it flushes.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1;
+    }
+
+    public interface Handler {
+
+        void notified(String payload);
+
+        /**
+         * The listener is (again) connected; anything sent while it was not is gone.
+         */
+        default void connected() {
+        }
+    }
+}
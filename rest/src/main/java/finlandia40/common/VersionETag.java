@@ -0,0 +1,35 @@
+package finlandia40.common;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.security.Principal;
+
+/**
+ * Conditional GET support for reads whose data carries a version number, such as the catalog version. The strong ETag
+ * is derived from that version plus the request variant (path, query, caller), so it is computed before anything is
+ * loaded and never requires hashing the response body. No Last-Modified is sent: its one-second granularity would let a
+ * client that only sends If-Modified-Since get a 304 for a change made in the same second.
+ */
+public final class VersionETag {
+
+    private VersionETag() {
+    }
+
+    /**
+     * Sets the ETag on the response; returns true (with status 304 already set) when the client copy is current.
+     */
+    public static boolean notModified(ServletWebRequest webRequest, long version) {
+        return webRequest.checkNotModified(eTag(webRequest.getRequest(), version));
+    }
+
+    private static String eTag(HttpServletRequest request, long version) {
+        Principal principal = request.getUserPrincipal();
+        String variant = request.getRequestURI()
+                + '?' + request.getQueryString()
+                + '|' + (principal != null ? principal.getName() : "")
+                + '|' + request.getHeader(HttpHeaders.ACCEPT);
+        return "\"" + Long.toString(version, 36) + "-" + Integer.toHexString(variant.hashCode()) + "\"";
+    }
+}
@@ -1,10 +1,16 @@
 package finlandia40.review.business;
 
+import finlandia40.book.business.CatalogCache;
+import finlandia40.book.business.CatalogChangeLog;
 import finlandia40.book.data.OfferRepository;
-import finlandia40.book.model.Offer;
+import finlandia40.book.model.CatalogChange;
+import finlandia40.common.AfterCommit;
 import finlandia40.review.data.ReviewRepository;
+import finlandia40.review.data.ReviewRow;
 import finlandia40.review.model.Review;
 import finlandia40.review.web.ReviewController;
+import finlandia40.user.business.SellerReputationService;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,34 +21,60 @@ public class ReviewService {
 
     private final ReviewRepository reviewRepository;
     private final OfferRepository offerRepository;
+    private final CatalogCache catalogCache;
+    private final CatalogChangeLog catalogChangeLog;
+    private final SellerReputationService sellerReputationService;
 
-    public ReviewService(ReviewRepository reviewRepository, OfferRepository offerRepository) {
+    public ReviewService(ReviewRepository reviewRepository, OfferRepository offerRepository, CatalogCache catalogCache, CatalogChangeLog catalogChangeLog, SellerReputationService sellerReputationService) {
         this.reviewRepository = reviewRepository;
         this.offerRepository = offerRepository;
+        this.catalogCache = catalogCache;
+        this.catalogChangeLog = catalogChangeLog;
+        this.sellerReputationService = sellerReputationService;
     }
 
+    /**
+     * Appends a review without loading the offer or its reviews: the rating update doubles as the existence check,
+     * and the review points at an uninitialized offer reference.
+     */
     @Transactional
     public Review createReview(ReviewController.CreateReviewRequest request, String reviewerName) {
-        Offer offer = offerRepository.findById(request.bookId())
-                .orElseThrow(() -> new RuntimeException("Offer not found with id: " + request.bookId()));
+        if (request.rating() < 1 || request.rating() > 5) {
+            throw new RuntimeException("Rating must be between 1 and 5");
+        }
+        Long offerId = request.bookId();
+        if (offerId == null || offerRepository.addRating(offerId, request.rating()) == 0) {
+            throw new RuntimeException("Offer not found with id: " + offerId);
+        }
 
         Review review = new Review(
                 request.rating(),
                 request.comment(),
                 reviewerName,
-                offer
+                offerRepository.getReferenceById(offerId)
         );
 
-        offer.getReviews().add(review);
+        sellerReputationService.recordReview(offerId, review.getRating());
+        catalogChangeLog.record(offerId, CatalogChange.Type.UPDATED);
+        AfterCommit.run(catalogCache::sellerChanged);
 
         return reviewRepository.save(review);
     }
 
     @Transactional(readOnly = true)
-    public List<Review> getReviewsForOffer(Long offerId) {
-        if (!offerRepository.existsById(offerId)) {
+    public List<ReviewRow> getReviewsForOffer(Long offerId) {
+        List<ReviewRow> reviews = reviewRepository.findRowsByOfferIdIn(List.of(offerId));
+        if (reviews.isEmpty() && !offerRepository.existsById(offerId)) {
             throw new RuntimeException("Offer not found with id: " + offerId);
         }
-        return reviewRepository.findAllByOfferId(offerId);
+        return reviews;
+    }
+
+    /**
+     * Newest first; {@code before} is the id of the last review on the previous page.
+     */
+    @Transactional(readOnly = true)
+    public List<ReviewRow> getReviewsPage(Long offerId, Long before, int limit) {
+        return reviewRepository.findRowsByOfferIdBefore(offerId, before != null ? before : Long.MAX_VALUE, PageRequest.ofSize(limit));
     }
 }
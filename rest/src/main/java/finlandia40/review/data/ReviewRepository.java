@@ -1,12 +1,21 @@
 package finlandia40.review.data;
 
 import finlandia40.review.model.Review;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Long> {
-    List<Review> findAllByOfferId(Long offerId);
+
+    @Query(ReviewRow.SELECT + "WHERE r.offer.id IN :offerIds ORDER BY r.id")
+    List<ReviewRow> findRowsByOfferIdIn(@Param("offerIds") Collection<Long> offerIds);
+
+    @Query(ReviewRow.SELECT + "WHERE r.offer.id = :offerId AND r.id < :beforeId ORDER BY r.id DESC")
+    List<ReviewRow> findRowsByOfferIdBefore(@Param("offerId") Long offerId, @Param("beforeId") long beforeId, Pageable pageable);
 }
@@ -0,0 +1,7 @@
+package finlandia40.review.data;
+
+public record ReviewRow(Long id, Long offerId, int rating, String comment, String reviewerName) {
+
+    public static final String SELECT = "SELECT new finlandia40.review.data.ReviewRow(r.id, r.offer.id, r.rating, r.comment, r.reviewerName) " +
+            "FROM Review r ";
+}
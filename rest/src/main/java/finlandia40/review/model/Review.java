@@ -11,6 +11,7 @@ import lombok.Setter;
 @Getter
 @Setter
 @NoArgsConstructor
+@Table(indexes = @Index(name = "idx_review_offer", columnList = "offer_id, id"))
 public class Review {
 
     @Id
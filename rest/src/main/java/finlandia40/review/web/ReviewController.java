@@ -1,9 +1,15 @@
 package finlandia40.review.web;
 
+import finlandia40.book.business.CatalogCache;
+import finlandia40.common.Cursor;
+import finlandia40.common.CursorPage;
+import finlandia40.common.VersionETag;
 import finlandia40.review.business.ReviewService;
+import finlandia40.review.data.ReviewRow;
 import finlandia40.review.model.Review;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.security.Principal;
 import java.util.List;
@@ -13,9 +19,11 @@ import java.util.List;
 public class ReviewController {
 
     private final ReviewService reviewService;
+    private final CatalogCache catalogCache;
 
-    public ReviewController(ReviewService reviewService) {
+    public ReviewController(ReviewService reviewService, CatalogCache catalogCache) {
         this.reviewService = reviewService;
+        this.catalogCache = catalogCache;
     }
 
     @PostMapping
@@ -25,9 +33,26 @@ public class ReviewController {
     }
 
     @GetMapping
-    public List<Review> getReviews(@RequestParam Long bookId) {
+    public List<ReviewRow> getReviews(@RequestParam Long bookId, ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
         return reviewService.getReviewsForOffer(bookId);
     }
 
+    @GetMapping("/page")
+    public CursorPage<ReviewRow> getReviewsPage(@RequestParam Long bookId,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(required = false) Integer size,
+                                                ServletWebRequest webRequest) {
+        if (VersionETag.notModified(webRequest, catalogCache.version())) {
+            return null;
+        }
+        int pageSize = CursorPage.pageSize(size);
+        Cursor before = Cursor.decode(cursor);
+        List<ReviewRow> reviews = reviewService.getReviewsPage(bookId, before != null ? before.id() : null, pageSize + 1);
+        return CursorPage.of(reviews, pageSize, review -> Cursor.of(review.id()));
+    }
+
     public record CreateReviewRequest(Long bookId, int rating, String comment) {}
 }
@@ -29,7 +29,7 @@ class AuthConfiguration {
                         .requestMatchers("/auth/**").permitAll()
                         .requestMatchers("/chat-socket/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/books/**").permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/reviews").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/reviews", "/api/reviews/page").permitAll()
                         .anyRequest().authenticated()
                 )
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
@@ -0,0 +1,42 @@
+package finlandia40.user.business;
+
+import finlandia40.user.data.SellerReputationRepository;
+import finlandia40.user.model.SellerReputation;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Keeps {@link SellerReputation} current with constant-cost updates that run in the caller's transaction.
+ */
+@Service
+public class SellerReputationService {
+
+    private final SellerReputationRepository sellerReputationRepository;
+
+    public SellerReputationService(SellerReputationRepository sellerReputationRepository) {
+        this.sellerReputationRepository = sellerReputationRepository;
+    }
+
+    public void recordReview(Long offerId, int rating) {
+        sellerReputationRepository.ensureForOffer(offerId);
+        sellerReputationRepository.addReview(offerId, rating);
+    }
+
+    /**
+     * @param confirmationTime time from reservation to confirmation, or null for reservations made before it was tracked
+     */
+    public void recordSale(Long offerId, Duration confirmationTime) {
+        sellerReputationRepository.ensureForOffer(offerId);
+        if (confirmationTime == null) {
+            sellerReputationRepository.addSale(offerId);
+        } else {
+            sellerReputationRepository.addSale(offerId, SellerReputation.confirmationBucket(confirmationTime) + 1);
+        }
+    }
+
+    public SellerReputation getReputation(Long sellerId) {
+        return sellerReputationRepository.findById(sellerId)
+                .orElseGet(() -> new SellerReputation(sellerId));
+    }
+}
@@ -0,0 +1,40 @@
+package finlandia40.user.data;
+
+import finlandia40.user.model.SellerReputation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SellerReputationRepository extends JpaRepository<SellerReputation, Long> {
+
+    String SELLER_OF_OFFER = "(SELECT o.seller_id FROM offer o WHERE o.id = :offerId)";
+
+    @Modifying
+    @Query(value = "INSERT INTO seller_reputation (seller_id, review_count, rating_total, completed_sales, confirmation_histogram) " +
+            "SELECT o.seller_id, 0, 0, 0, array_fill(CAST(0 AS bigint), ARRAY[" + SellerReputation.CONFIRMATION_BUCKETS + "]) " +
+            "FROM offer o WHERE o.id = :offerId ON CONFLICT (seller_id) DO NOTHING", nativeQuery = true)
+    int ensureForOffer(@Param("offerId") Long offerId);
+
+    @Modifying
+    @Query(value = "UPDATE seller_reputation SET review_count = review_count + 1, rating_total = rating_total + :rating, " +
+            "average_rating = CAST(rating_total + :rating AS float8) / (review_count + 1) " +
+            "WHERE seller_id = " + SELLER_OF_OFFER, nativeQuery = true)
+    int addReview(@Param("offerId") Long offerId, @Param("rating") int rating);
+
+    @Modifying
+    @Query(value = "UPDATE seller_reputation SET completed_sales = completed_sales + 1 " +
+            "WHERE seller_id = " + SELLER_OF_OFFER, nativeQuery = true)
+    int addSale(@Param("offerId") Long offerId);
+
+    /**
+     * Postgres arrays are 1-based, so {@code slot} is the histogram bucket plus one.
+     */
+    @Modifying
+    @Query(value = "UPDATE seller_reputation SET completed_sales = completed_sales + 1, " +
+            "confirmation_histogram[:slot] = confirmation_histogram[:slot] + 1 " +
+            "WHERE seller_id = " + SELLER_OF_OFFER, nativeQuery = true)
+    int addSale(@Param("offerId") Long offerId, @Param("slot") int slot);
+}
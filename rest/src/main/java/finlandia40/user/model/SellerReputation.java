@@ -0,0 +1,78 @@
+package finlandia40.user.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Duration;
+
+/**
+ * Per-seller trust aggregate, updated in place on every review and confirmed sale so reading it never touches reviews or sales.
+ * Confirmation times are kept as a histogram of power-of-two hour buckets: bucket 0 is under an hour,
+ * bucket k covers [2^(k-1), 2^k) hours and the last bucket is open-ended. The median is interpolated within its bucket.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+public class SellerReputation {
+
+    public static final int CONFIRMATION_BUCKETS = 12;
+
+    @Id
+    private Long sellerId;
+
+    @Column(nullable = false)
+    private long reviewCount;
+
+    @Column(nullable = false)
+    private long ratingTotal;
+
+    private Double averageRating;
+
+    @Column(nullable = false)
+    private long completedSales;
+
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(nullable = false)
+    private long[] confirmationHistogram;
+
+    public SellerReputation(Long sellerId) {
+        this.sellerId = sellerId;
+        this.confirmationHistogram = new long[CONFIRMATION_BUCKETS];
+    }
+
+    public static int confirmationBucket(Duration confirmationTime) {
+        long hours = Math.max(0, confirmationTime.toHours());
+        int bucket = 64 - Long.numberOfLeadingZeros(hours);
+        return Math.min(bucket, CONFIRMATION_BUCKETS - 1);
+    }
+
+    public Double getMedianConfirmationHours() {
+        long total = 0;
+        for (long count : confirmationHistogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return null;
+        }
+        double half = total / 2.0;
+        long before = 0;
+        for (int bucket = 0; bucket < confirmationHistogram.length; bucket++) {
+            long count = confirmationHistogram[bucket];
+            if (count > 0 && before + count >= half) {
+                double lower = bucket == 0 ? 0 : Math.pow(2, bucket - 1);
+                if (bucket == confirmationHistogram.length - 1) {
+                    return lower;
+                }
+                double upper = Math.pow(2, bucket);
+                return lower + (upper - lower) * (half - before) / count;
+            }
+            before += count;
+        }
+        return null;
+    }
+}
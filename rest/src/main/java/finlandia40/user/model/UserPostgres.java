@@ -8,6 +8,7 @@ import lombok.Setter;
 @Getter
 @NoArgsConstructor
 @Entity
+@Table(indexes = @Index(name = "idx_user_city", columnList = "city"))
 public class UserPostgres {
 
     @Id
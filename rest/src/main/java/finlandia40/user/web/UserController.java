@@ -1,6 +1,8 @@
 package finlandia40.user.web;
 
+import finlandia40.user.business.SellerReputationService;
 import finlandia40.user.business.UserService;
+import finlandia40.user.model.SellerReputation;
 import finlandia40.user.model.UserPostgres;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -11,22 +13,24 @@ import org.springframework.web.bind.annotation.*;
 public class UserController {
 
     private final UserService userService;
+    private final SellerReputationService sellerReputationService;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, SellerReputationService sellerReputationService) {
         this.userService = userService;
+        this.sellerReputationService = sellerReputationService;
     }
 
     @GetMapping("/me")
     public UserProfileResponse getProfile(Authentication authentication) {
         String login = authentication.getName();
         UserPostgres user = userService.loadUserByLogin(login);
-        return new UserProfileResponse(user.getId(), user.getLogin(), user.getEmail(), user.getNumber(), user.getCountry(), user.getCity());
+        return convertToResponse(user);
     }
 
     @GetMapping("/users/{login}")
     public UserProfileResponse getUserByLogin(@PathVariable String login) {
         UserPostgres user = userService.loadUserByLogin(login);
-        return new UserProfileResponse(user.getId(), user.getLogin(), user.getEmail(), user.getNumber(), user.getCountry(), user.getCity());
+        return convertToResponse(user);
     }
 
     @PutMapping("/me")
@@ -36,6 +40,17 @@ public class UserController {
         return ResponseEntity.ok().build();
     }
 
-    public record UserProfileResponse(Long id, String login, String email, String number, String country, String city) {}
+    private UserProfileResponse convertToResponse(UserPostgres user) {
+        SellerReputation reputation = sellerReputationService.getReputation(user.getId());
+        return new UserProfileResponse(user.getId(), user.getLogin(), user.getEmail(), user.getNumber(), user.getCountry(), user.getCity(),
+                new SellerReputationResponse(
+                        reputation.getAverageRating(),
+                        reputation.getReviewCount(),
+                        reputation.getCompletedSales(),
+                        reputation.getMedianConfirmationHours()));
+    }
+
+    public record SellerReputationResponse(Double averageRating, long reviewCount, long completedSales, Double medianConfirmationHours) {}
+    public record UserProfileResponse(Long id, String login, String email, String number, String country, String city, SellerReputationResponse reputation) {}
     public record UpdateProfileRequest(String email, String number, String country, String city) {}
 }
@@ -0,0 +1,2 @@
+-- Runs after data.sql in the JOINED layout: every seeded offer is an unsold book with a row of its own in book.
+INSERT INTO book (id, is_sold) SELECT id, false FROM offer;
@@ -0,0 +1,3 @@
+-- Runs after data.sql in the single-table layout: the application always writes these columns itself.
+ALTER TABLE offer ALTER COLUMN offer_type DROP DEFAULT;
+ALTER TABLE offer ALTER COLUMN is_sold DROP DEFAULT;
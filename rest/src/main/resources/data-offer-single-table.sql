@@ -0,0 +1,4 @@
+-- Runs before data.sql in the single-table layout. The seed inserts only the columns both layouts share, so the
+-- discriminator and the book columns kept in offer get defaults for it; data-offer-single-table-after.sql removes them.
+ALTER TABLE offer ALTER COLUMN offer_type SET DEFAULT 'Book';
+ALTER TABLE offer ALTER COLUMN is_sold SET DEFAULT false;
@@ -2,6 +2,10 @@
 TRUNCATE TABLE user_postgres RESTART IDENTITY CASCADE;
 TRUNCATE TABLE offer RESTART IDENTITY CASCADE;
 TRUNCATE TABLE review RESTART IDENTITY CASCADE;
+TRUNCATE TABLE catalog_change RESTART IDENTITY;
+TRUNCATE TABLE seller_monthly_sales;
+TRUNCATE TABLE seller_reputation;
+TRUNCATE TABLE conversation;
 
 -- Insert Users (Sellers)
 INSERT INTO user_postgres (login, password, email, number, country, city) VALUES
@@ -9,30 +13,27 @@ INSERT INTO user_postgres (login, password, email, number, country, city) VALUES
 ('zofia_reads', '$2a$10$i/5d9FOP/28rUd1aDmNC0.uq8qJ8a/pXENzDPLsXZbpSwynpi8.KG', 'zofia.nowak@example.com', '602304405', 'Poland', 'Krakow'),
 ('piotr_seller', '$2a$10$i/5d9FOP/28rUd1aDmNC0.uq8qJ8a/pXENzDPLsXZbpSwynpi8.KG', 'piotr.wisniewski@example.com', '703506607', 'Poland', 'Lodz');
 
--- Insert Book Offers (now into offer table, then book table for ID linking)
--- Step 1: Insert into offer and get IDs (PostgreSQL syntax)
-INSERT INTO offer (title, author, book_condition, price, image_url, seller_id) VALUES
-('Mechanika techniczna', 'Władysław Siuta', 'Visibly Used', 70.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
-('Symfonia C++ Standard', 'Jerzy Grębosz', 'Excellent', 100.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
-('Linux Biblia', 'Christopher Negus', 'Visibly Used', 120.00, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
-('Biologia na czasie 2', 'Marek Guzik, Władysław Zamachowski', 'Very Good', 49.00, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
-('Wiedźmin - Ostatnie życzenie', 'Andrzej Sapkowski', 'Like New', 35.50, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
-('Clean Code', 'Robert C. Martin', 'Good', 85.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller')),
-('Pan Tadeusz', 'Adam Mickiewicz', 'Acceptable', 15.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller')),
-('The Great Gatsby', 'F. Scott Fitzgerald', 'Very Good', 45.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
-('1984', 'George Orwell', 'Like New', 40.00, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
-('Harry Potter i Kamień Filozoficzny', 'J.K. Rowling', 'Good', 55.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller')),
-('The Lord of the Rings', 'J.R.R. Tolkien', 'Excellent', 150.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
-('Thinking, Fast and Slow', 'Daniel Kahneman', 'Visibly Used', 60.00, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
-('Effective Java', 'Joshua Bloch', 'Like New', 180.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller')),
-('The Pragmatic Programmer', 'Andrew Hunt, David Thomas', 'Excellent', 140.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
-('Zbrodnia i kara', 'Fiodor Dostojewski', 'Acceptable', 25.00, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
-('The Alchemist', 'Paulo Coelho', 'Good', 30.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller')),
-('Maly Ksiaze', 'Antoine de Saint-Exupéry', 'Like New', 20.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
-('Design Patterns', 'Erich Gamma, Richard Helm, Ralph Johnson, John Vlissides', 'Good', 200.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller'));
-
--- Insert into book table to link with offer IDs, providing default value for is_sold
-INSERT INTO book (id, is_sold) SELECT id, false FROM offer;
+-- Insert Book Offers into the offer table, with ids from the pooled offer sequence (PostgreSQL syntax). The columns
+-- are common to both offer layouts; the layout's own seed script fills in the rest (data-offer-*.sql).
+INSERT INTO offer (id, title, author, book_condition, price, image_url, seller_id) VALUES
+(nextval('offer_seq'), 'Mechanika techniczna', 'Władysław Siuta', 'Visibly Used', 70.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
+(nextval('offer_seq'), 'Symfonia C++ Standard', 'Jerzy Grębosz', 'Excellent', 100.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
+(nextval('offer_seq'), 'Linux Biblia', 'Christopher Negus', 'Visibly Used', 120.00, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
+(nextval('offer_seq'), 'Biologia na czasie 2', 'Marek Guzik, Władysław Zamachowski', 'Very Good', 49.00, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
+(nextval('offer_seq'), 'Wiedźmin - Ostatnie życzenie', 'Andrzej Sapkowski', 'Like New', 35.50, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
+(nextval('offer_seq'), 'Clean Code', 'Robert C. Martin', 'Good', 85.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller')),
+(nextval('offer_seq'), 'Pan Tadeusz', 'Adam Mickiewicz', 'Acceptable', 15.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller')),
+(nextval('offer_seq'), 'The Great Gatsby', 'F. Scott Fitzgerald', 'Very Good', 45.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
+(nextval('offer_seq'), '1984', 'George Orwell', 'Like New', 40.00, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
+(nextval('offer_seq'), 'Harry Potter i Kamień Filozoficzny', 'J.K. Rowling', 'Good', 55.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller')),
+(nextval('offer_seq'), 'The Lord of the Rings', 'J.R.R. Tolkien', 'Excellent', 150.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
+(nextval('offer_seq'), 'Thinking, Fast and Slow', 'Daniel Kahneman', 'Visibly Used', 60.00, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
+(nextval('offer_seq'), 'Effective Java', 'Joshua Bloch', 'Like New', 180.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller')),
+(nextval('offer_seq'), 'The Pragmatic Programmer', 'Andrew Hunt, David Thomas', 'Excellent', 140.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
+(nextval('offer_seq'), 'Zbrodnia i kara', 'Fiodor Dostojewski', 'Acceptable', 25.00, '', (SELECT id from user_postgres WHERE login = 'zofia_reads')),
+(nextval('offer_seq'), 'The Alchemist', 'Paulo Coelho', 'Good', 30.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller')),
+(nextval('offer_seq'), 'Maly Ksiaze', 'Antoine de Saint-Exupéry', 'Like New', 20.00, '', (SELECT id from user_postgres WHERE login = 'janek_bookworm')),
+(nextval('offer_seq'), 'Design Patterns', 'Erich Gamma, Richard Helm, Ralph Johnson, John Vlissides', 'Good', 200.00, '', (SELECT id from user_postgres WHERE login = 'piotr_seller'));
 
 -- Insert Reviews for Books (linked to offer_id)
 INSERT INTO review (rating, comment, reviewer_name, offer_id) VALUES
@@ -45,3 +46,33 @@ INSERT INTO review (rating, comment, reviewer_name, offer_id) VALUES
 (4, 'A bit philosophical but very insightful.', 'Thinker', (SELECT id from offer WHERE title = 'Thinking, Fast and Slow')),
 (5, 'Magic! Loved it as a child and still do.', 'PotterHead', (SELECT id from offer WHERE title = 'Harry Potter i Kamień Filozoficzny')),
 (4, 'Deeply psychological and moving.', 'LiteratureLover', (SELECT id from offer WHERE title = 'Zbrodnia i kara'));
+
+-- Seed the denormalized rating summaries from the reviews inserted above
+UPDATE offer o SET
+    review_count = r.review_count,
+    rating_total = r.rating_total,
+    one_star = r.one_star,
+    two_stars = r.two_stars,
+    three_stars = r.three_stars,
+    four_stars = r.four_stars,
+    five_stars = r.five_stars
+FROM (
+    SELECT offer_id,
+           count(*) AS review_count,
+           sum(rating) AS rating_total,
+           count(*) FILTER (WHERE rating = 1) AS one_star,
+           count(*) FILTER (WHERE rating = 2) AS two_stars,
+           count(*) FILTER (WHERE rating = 3) AS three_stars,
+           count(*) FILTER (WHERE rating = 4) AS four_stars,
+           count(*) FILTER (WHERE rating = 5) AS five_stars
+    FROM review
+    GROUP BY offer_id
+) r
+WHERE o.id = r.offer_id;
+
+-- Seed seller reputation from the reviews above
+INSERT INTO seller_reputation (seller_id, review_count, rating_total, average_rating, completed_sales, confirmation_histogram)
+SELECT o.seller_id, count(*), sum(r.rating), avg(r.rating), 0, array_fill(CAST(0 AS bigint), ARRAY[12])
+FROM review r
+JOIN offer o ON o.id = r.offer_id
+GROUP BY o.seller_id;
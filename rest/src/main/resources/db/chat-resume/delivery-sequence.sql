@@ -0,0 +1,16 @@
+-- Adds per-user delivery sequence numbers to a database created before chat resume keyed on them. Run it once before
+-- starting the version that resumes by sequence; ChatBackfill numbers the stored messages on the first start.
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS chat_sequence (
+    user_id  bigint PRIMARY KEY,
+    last_seq bigint NOT NULL
+);
+
+ALTER TABLE chat_message ADD COLUMN IF NOT EXISTS sender_seq bigint;
+ALTER TABLE chat_message ADD COLUMN IF NOT EXISTS receiver_seq bigint;
+
+CREATE INDEX IF NOT EXISTS idx_chat_sender_seq ON chat_message (first_user, sender_seq);
+CREATE INDEX IF NOT EXISTS idx_chat_receiver_seq ON chat_message (second_user, receiver_seq);
+
+COMMIT;
@@ -0,0 +1,10 @@
+-- Adds message search to a database created before chat_message.search_vector existed. Adding a stored generated
+-- column rewrites the table, so run it once during a maintenance window, before starting the version that searches.
+BEGIN;
+
+ALTER TABLE chat_message ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', coalesce(message, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_chat_search ON chat_message USING gin (search_vector);
+
+COMMIT;
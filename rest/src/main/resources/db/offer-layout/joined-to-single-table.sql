@@ -0,0 +1,34 @@
+-- Moves the Offer hierarchy from the JOINED layout (offer + book + completed_offer) into the offer table.
+-- Run with the application stopped, then start it with the offer-single-table profile.
+BEGIN;
+
+ALTER TABLE offer
+    ADD COLUMN offer_type varchar(31),
+    ADD COLUMN is_sold boolean,
+    ADD COLUMN pending_buyer_id bigint REFERENCES user_postgres (id),
+    ADD COLUMN reserved_at timestamp(6),
+    ADD COLUMN buyer_id bigint REFERENCES user_postgres (id),
+    ADD COLUMN completion_date timestamp(6);
+
+UPDATE offer o
+SET offer_type = 'Book', is_sold = b.is_sold, pending_buyer_id = b.pending_buyer_id, reserved_at = b.reserved_at
+FROM book b
+WHERE b.id = o.id;
+
+UPDATE offer o
+SET offer_type = 'CompletedOffer', is_sold = true, buyer_id = c.buyer_id, completion_date = c.completion_date
+FROM completed_offer c
+WHERE c.id = o.id;
+
+ALTER TABLE offer ALTER COLUMN offer_type SET NOT NULL;
+
+DROP TABLE book;
+DROP TABLE completed_offer;
+
+CREATE INDEX idx_book_available ON offer (is_sold, pending_buyer_id);
+CREATE INDEX idx_book_reserved_at ON offer (reserved_at);
+CREATE INDEX idx_completed_buyer_date ON offer (buyer_id, completion_date, id);
+CREATE INDEX idx_completed_date ON offer (completion_date, id);
+CREATE INDEX idx_completed_seller_date ON offer (seller_id, completion_date, id);
+
+COMMIT;
@@ -0,0 +1,45 @@
+-- Moves the Offer hierarchy from the single-table layout back to JOINED (offer + book + completed_offer).
+-- Run with the application stopped, then start it without the offer-single-table profile.
+BEGIN;
+
+CREATE TABLE book (
+    id bigint PRIMARY KEY REFERENCES offer (id),
+    is_sold boolean NOT NULL,
+    pending_buyer_id bigint REFERENCES user_postgres (id),
+    reserved_at timestamp(6)
+);
+
+CREATE TABLE completed_offer (
+    id bigint PRIMARY KEY REFERENCES offer (id),
+    buyer_id bigint NOT NULL REFERENCES user_postgres (id),
+    seller_id bigint,
+    completion_date timestamp(6) NOT NULL
+);
+
+INSERT INTO book (id, is_sold, pending_buyer_id, reserved_at)
+SELECT id, coalesce(is_sold, false), pending_buyer_id, reserved_at FROM offer WHERE offer_type = 'Book';
+
+INSERT INTO completed_offer (id, buyer_id, seller_id, completion_date)
+SELECT id, buyer_id, seller_id, completion_date FROM offer WHERE offer_type = 'CompletedOffer';
+
+DROP INDEX idx_book_available;
+DROP INDEX idx_book_reserved_at;
+DROP INDEX idx_completed_buyer_date;
+DROP INDEX idx_completed_date;
+DROP INDEX idx_completed_seller_date;
+
+ALTER TABLE offer
+    DROP COLUMN offer_type,
+    DROP COLUMN is_sold,
+    DROP COLUMN pending_buyer_id,
+    DROP COLUMN reserved_at,
+    DROP COLUMN buyer_id,
+    DROP COLUMN completion_date;
+
+CREATE INDEX idx_book_available ON book (is_sold, pending_buyer_id);
+CREATE INDEX idx_book_reserved_at ON book (reserved_at);
+CREATE INDEX idx_completed_buyer_date ON completed_offer (buyer_id, completion_date, id);
+CREATE INDEX idx_completed_date ON completed_offer (completion_date, id);
+CREATE INDEX idx_completed_seller_date ON completed_offer (seller_id, completion_date, id);
+
+COMMIT;
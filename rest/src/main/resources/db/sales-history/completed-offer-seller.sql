@@ -0,0 +1,12 @@
+-- Fills completed_offer.seller_id for sales completed before the column existed (JOINED layout only).
+-- Run once after the first start that adds the column; the single-table layout reads the offer's seller_id instead.
+BEGIN;
+
+UPDATE completed_offer c
+SET seller_id = o.seller_id
+FROM offer o
+WHERE o.id = c.id AND c.seller_id IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_completed_seller_date ON completed_offer (seller_id, completion_date, id);
+
+COMMIT;
@@ -0,0 +1,8 @@
+-- Runs after Hibernate has created or updated the tables (spring.jpa.defer-datasource-initialization), for objects
+-- the entity mappings cannot express.
+
+-- Catalog cache version shared by all nodes, taken after every committed catalog write
+CREATE SEQUENCE IF NOT EXISTS catalog_version_seq;
+
+-- Message search over the generated chat_message.search_vector column
+CREATE INDEX IF NOT EXISTS idx_chat_search ON chat_message USING gin (search_vector);
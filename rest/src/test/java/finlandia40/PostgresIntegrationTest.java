@@ -0,0 +1,18 @@
+package finlandia40;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Full application context on a PostgreSQL container seeded from data.sql. The context, and with it the container, is
+ * shared by every subclass; tests leave their own rows behind, so they must not depend on what other tests changed.
+ * Skipped when no Docker daemon is available.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class PostgresIntegrationTest {
+}
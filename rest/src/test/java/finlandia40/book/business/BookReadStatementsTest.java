@@ -0,0 +1,76 @@
+package finlandia40.book.business;
+
+import finlandia40.PostgresIntegrationTest;
+import finlandia40.book.data.BookFilter;
+import finlandia40.book.data.BookRow;
+import finlandia40.book.data.BookSort;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Read paths are built from projections, so the number of statements per request must not grow with the number of rows.
+ */
+class BookReadStatementsTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void catalogPageTakesTheSameStatementsWhateverItsSize() {
+        for (int size : new int[]{1, 3, 6}) {
+            statistics.clear();
+            List<BookRow> page = bookService.getAvailableBooksPage(BookFilter.NONE, BookSort.OLDEST, null, size, true);
+
+            assertThat(page).hasSize(size);
+            // ids, rows, reviews
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+            assertThat(statistics.getEntityLoadCount()).isZero();
+        }
+    }
+
+    @Test
+    void catalogPageWithoutReviewsSkipsTheReviewQuery() {
+        statistics.clear();
+        bookService.getAvailableBooksPage(BookFilter.NONE, BookSort.PRICE_DESC, null, 10, false);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void historyListsTakeOneStatement() {
+        BookRow book = bookService.getAvailableBooksPage(BookFilter.NONE, BookSort.NEWEST, null, 20, false).stream()
+                .filter(row -> row.sellerLogin().equals("piotr_seller"))
+                .findFirst()
+                .orElseThrow();
+        bookService.buyBook(book.id(), "zofia_reads");
+        bookService.confirmSale(book.id(), "piotr_seller");
+
+        statistics.clear();
+        assertThat(bookService.getPurchaseHistory("zofia_reads")).isNotEmpty();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        assertThat(bookService.getSalesHistory("piotr_seller")).isNotEmpty();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}
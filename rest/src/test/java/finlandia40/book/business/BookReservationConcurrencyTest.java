@@ -0,0 +1,96 @@
+package finlandia40.book.business;
+
+import finlandia40.PostgresIntegrationTest;
+import finlandia40.book.web.BookController;
+import finlandia40.user.business.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A reservation is a single conditional update, so of many buyers racing for the same hot listings exactly one gets
+ * each book, and losers fail fast. Reports reservation attempts per second and their latency percentiles.
+ */
+class BookReservationConcurrencyTest extends PostgresIntegrationTest {
+
+    private static final int BUYERS = 400;
+    private static final int BOOKS = 8;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void exactlyOneOfConcurrentBuyersReservesEachBook() throws Exception {
+        String prefix = "racer" + System.nanoTime() + "_";
+        for (int i = 0; i < BUYERS; i++) {
+            userService.createUser(prefix + i, "secret", prefix + i + "@example.com", "500000000", "Poland", "Lodz");
+        }
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            bookIds.add(bookService.createBook(
+                    new BookController.CreateBookRequest("Lalka " + i, "Bolesław Prus", "good", 30.0, null), "piotr_seller").getId());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(BUYERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Attempt>> attempts = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            String buyer = prefix + i;
+            int book = i % BOOKS;
+            attempts.add(executor.submit(() -> {
+                start.await();
+                long started = System.nanoTime();
+                boolean reserved;
+                try {
+                    bookService.buyBook(bookIds.get(book), buyer);
+                    reserved = true;
+                } catch (RuntimeException e) {
+                    reserved = false;
+                }
+                return new Attempt(book, reserved, System.nanoTime() - started);
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+
+        int[] winners = new int[BOOKS];
+        List<Long> latencies = new ArrayList<>();
+        try {
+            for (Future<Attempt> future : attempts) {
+                Attempt attempt = future.get(60, TimeUnit.SECONDS);
+                if (attempt.reserved()) {
+                    winners[attempt.book()]++;
+                }
+                latencies.add(attempt.nanos());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+
+        for (int i = 0; i < BOOKS; i++) {
+            assertThat(winners[i]).isEqualTo(1);
+            assertThat(bookService.getBookDetails(bookIds.get(i)).pendingBuyerLogin()).startsWith(prefix);
+        }
+        Collections.sort(latencies);
+        System.out.printf("reservation: %d buyers on %d books, %d attempts/s, p50 %d us, p99 %d us%n",
+                BUYERS, BOOKS, BUYERS * 1000L / elapsedMillis,
+                latencies.get(latencies.size() / 2) / 1000, latencies.get(latencies.size() * 99 / 100) / 1000);
+    }
+
+    private record Attempt(int book, boolean reserved, long nanos) {
+    }
+}
@@ -0,0 +1,87 @@
+package finlandia40.book.business;
+
+import finlandia40.PostgresIntegrationTest;
+import finlandia40.book.web.BookController;
+import finlandia40.review.business.ReviewService;
+import finlandia40.review.web.ReviewController;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A sale is completed in place: the write count does not depend on the reviews of the offer, and the reviews survive.
+ */
+@Tag("benchmark")
+class SaleCompletionTest extends PostgresIntegrationTest {
+
+    private static final int SALES = 40;
+    private static final int REVIEWS = 5;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void confirmingASaleTakesTheSameWritesWhateverTheReviews() {
+        List<Long> latencies = new ArrayList<>();
+        long statementsWithoutReviews = -1;
+        long statementsWithReviews = -1;
+
+        for (int i = 0; i < SALES; i++) {
+            boolean reviewed = i % 2 == 1;
+            Long bookId = reservedBook(reviewed ? REVIEWS : 0);
+
+            statistics.clear();
+            long started = System.nanoTime();
+            bookService.confirmSale(bookId, "piotr_seller");
+            latencies.add(System.nanoTime() - started);
+
+            assertThat(statistics.getEntityInsertCount()).isZero();
+            assertThat(statistics.getEntityDeleteCount()).isZero();
+            if (reviewed) {
+                statementsWithReviews = statistics.getPrepareStatementCount();
+                assertThat(reviewService.getReviewsForOffer(bookId)).hasSize(REVIEWS);
+            } else {
+                statementsWithoutReviews = statistics.getPrepareStatementCount();
+            }
+        }
+
+        assertThat(statementsWithReviews).isEqualTo(statementsWithoutReviews);
+
+        Collections.sort(latencies);
+        System.out.printf("confirmSale: %d statements, p50 %d us, p99 %d us%n", statementsWithReviews,
+                latencies.get(latencies.size() / 2) / 1000, latencies.get(latencies.size() * 99 / 100) / 1000);
+    }
+
+    private Long reservedBook(int reviews) {
+        Long bookId = bookService.createBook(
+                new BookController.CreateBookRequest("Ferdydurke", "Witold Gombrowicz", "good", 25.0, null), "piotr_seller").getId();
+        for (int i = 0; i < reviews; i++) {
+            reviewService.createReview(new ReviewController.CreateReviewRequest(bookId, 1 + i % 5, "review " + i), "janek_bookworm");
+        }
+        bookService.buyBook(bookId, "zofia_reads");
+        return bookId;
+    }
+}
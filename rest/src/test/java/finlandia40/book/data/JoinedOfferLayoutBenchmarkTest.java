@@ -0,0 +1,4 @@
+package finlandia40.book.data;
+
+class JoinedOfferLayoutBenchmarkTest extends OfferLayoutBenchmark {
+}
@@ -0,0 +1,83 @@
+package finlandia40.book.data;
+
+import finlandia40.PostgresIntegrationTest;
+import finlandia40.book.business.BookService;
+import finlandia40.book.web.BookController;
+import finlandia40.review.business.ReviewService;
+import finlandia40.review.web.ReviewController;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency of the operations the offer layout affects. Each subclass runs it against one layout; compare the printed
+ * percentiles of both to choose between them.
+ */
+@Tag("benchmark")
+abstract class OfferLayoutBenchmark extends PostgresIntegrationTest {
+
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 200;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private OfferRepository offerRepository;
+
+    @Autowired
+    private OfferLayout offerLayout;
+
+    @Test
+    void measureCatalogOperations() {
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 0; i < WARMUP + ROUNDS; i++) {
+            bookIds.add(bookService.createBook(
+                    new BookController.CreateBookRequest("Solaris " + i, "Stanisław Lem", "good", 20.0 + i % 30, null),
+                    "piotr_seller").getId());
+        }
+        String layout = ClassUtils.getUserClass(offerLayout).getSimpleName();
+
+        report(layout, "catalog page", i -> assertThat(
+                bookService.getAvailableBooksPage(BookFilter.NONE, BookSort.PRICE_ASC, null, 20, true)).hasSize(20));
+        report(layout, "detail", i -> assertThat(bookRepository.findRowById(bookIds.get(i))).isNotEmpty());
+        report(layout, "polymorphic find", i -> assertThat(offerRepository.findById(bookIds.get(i))).isNotEmpty());
+        report(layout, "review insert", i -> reviewService.createReview(
+                new ReviewController.CreateReviewRequest(bookIds.get(i), 1 + i % 5, "benchmark"), "janek_bookworm"));
+
+        bookIds.forEach(id -> bookService.buyBook(id, "zofia_reads"));
+        report(layout, "confirm sale", i -> bookService.confirmSale(bookIds.get(i), "piotr_seller"));
+    }
+
+    private static void report(String layout, String operation, Round round) {
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < WARMUP + ROUNDS; i++) {
+            long started = System.nanoTime();
+            round.run(i);
+            if (i >= WARMUP) {
+                latencies.add(System.nanoTime() - started);
+            }
+        }
+        Collections.sort(latencies);
+        System.out.printf("%s %s: p50 %d us, p99 %d us%n", layout, operation,
+                latencies.get(latencies.size() / 2) / 1000, latencies.get(latencies.size() * 99 / 100) / 1000);
+    }
+
+    private interface Round {
+
+        void run(int i);
+    }
+}
@@ -0,0 +1,7 @@
+package finlandia40.book.data;
+
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("offer-single-table")
+class SingleTableOfferLayoutBenchmarkTest extends OfferLayoutBenchmark {
+}
@@ -0,0 +1,64 @@
+package finlandia40.book.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import finlandia40.PostgresIntegrationTest;
+import finlandia40.book.business.CatalogImporter;
+import finlandia40.security.JwtService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bulk import throughput through the HTTP endpoint, so open-in-view is in effect as it is in production.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CatalogImportBenchmarkTest extends PostgresIntegrationTest {
+
+    private static final int ROWS = 20_000;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void importsNdjsonInChunks() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            body.append("{\"title\":\"Imported ").append(i)
+                    .append("\",\"author\":\"Author ").append(i % 100)
+                    .append("\",\"condition\":\"good\",\"price\":").append(10 + i % 40).append("}\n");
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/books/bulk"))
+                .header("Content-Type", "application/x-ndjson")
+                .header("Authorization", "Bearer " + jwtService.generateToken("piotr_seller"))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+
+        long started = System.nanoTime();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        long millis = (System.nanoTime() - started) / 1_000_000;
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        CatalogImporter.ImportResult result = objectMapper.readValue(response.body(), CatalogImporter.ImportResult.class);
+        assertThat(result.created()).isEqualTo(ROWS);
+        assertThat(result.failed()).isZero();
+        System.out.printf("import: %d rows in %d ms, %d rows/s%n", ROWS, millis, ROWS * 1000L / Math.max(1, millis));
+    }
+}
@@ -0,0 +1,226 @@
+package finlandia40.book.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import finlandia40.PostgresIntegrationTest;
+import finlandia40.book.business.BookService;
+import finlandia40.book.data.BookFilter;
+import finlandia40.chat.data.ChatMessageRepository;
+import finlandia40.chat.model.ChatMessage;
+import finlandia40.chat.web.ChatMessageController;
+import finlandia40.review.business.ReviewService;
+import finlandia40.review.web.ReviewController;
+import finlandia40.security.JwtService;
+import finlandia40.user.business.UserService;
+import finlandia40.user.model.UserPostgres;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per endpoint of the book, chat and review controllers: the bytes on the wire for each encoding, measured on the
+ * embedded server so that the server.compression settings are the ones in effect, and the CPU time spent serializing
+ * the same payload with the server's own JSON and CBOR converters, measured on this thread apart from any network time.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ResponseEncodingBenchmarkTest extends PostgresIntegrationTest {
+
+    private static final int ROUNDS = 200;
+    private static final int MESSAGES = 300;
+    private static final int REVIEWS = 100;
+    private static final int PAGE_SIZE = 50;
+    private static final int COMPRESSION_THRESHOLD = 2048;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BookController bookController;
+
+    @Autowired
+    private ChatMessageController chatMessageController;
+
+    @Autowired
+    private ReviewController reviewController;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private RequestMappingHandlerAdapter handlerAdapter;
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void compactEncodingsShrinkEveryEndpoint() throws Exception {
+        UserPostgres reader = userService.loadUserByLogin("janek_bookworm");
+        UserPostgres partner = userService.loadUserByLogin("zofia_reads");
+        seedConversation(reader, partner);
+        Long bookId = seedReviewedBook();
+        String token = jwtService.generateToken(reader.getLogin());
+        authenticate(reader.getLogin());
+
+        Long partnerId = partner.getId();
+        List<Endpoint> endpoints = List.of(
+                new Endpoint("books", "/api/books",
+                        () -> bookController.getAllBooks(BookFilter.NONE, null, true, webRequest())),
+                new Endpoint("books page", "/api/books/page?size=" + PAGE_SIZE + "&reviews=true",
+                        () -> bookController.getBooksPage(BookFilter.NONE, null, null, PAGE_SIZE, true, webRequest())),
+                new Endpoint("chat history", "/api/messages?secondUserId=" + partnerId,
+                        () -> chatMessageController.getChatMessagesForTwoGivenUsers(partnerId)),
+                new Endpoint("chat page", "/api/messages/page?secondUserId=" + partnerId + "&size=" + PAGE_SIZE,
+                        () -> chatMessageController.getChatMessagesPage(partnerId, null, PAGE_SIZE)),
+                new Endpoint("reviews", "/api/reviews?bookId=" + bookId,
+                        () -> reviewController.getReviews(bookId, webRequest())),
+                new Endpoint("reviews page", "/api/reviews/page?bookId=" + bookId + "&size=" + PAGE_SIZE,
+                        () -> reviewController.getReviewsPage(bookId, null, PAGE_SIZE, webRequest())));
+
+        ObjectMapper jsonMapper = mapperFor(MediaType.APPLICATION_JSON);
+        ObjectMapper cborMapper = mapperFor(MediaType.APPLICATION_CBOR);
+        for (Endpoint endpoint : endpoints) {
+            Wire json = fetch(endpoint.path(), token, "application/json", "identity");
+            Wire cbor = fetch(endpoint.path(), token, "application/cbor", "identity");
+            Wire gzipJson = fetch(endpoint.path(), token, "application/json", "gzip");
+            Wire gzipCbor = fetch(endpoint.path(), token, "application/cbor", "gzip");
+            Object payload = endpoint.payload().call();
+            long jsonCpu = cpuNanosPerWrite(jsonMapper, payload);
+            long cborCpu = cpuNanosPerWrite(cborMapper, payload);
+
+            System.out.printf("%s: json %s, cbor %s, json+gzip %s, cbor+gzip %s; serialization cpu json %d us, cbor %d us%n",
+                    endpoint.name(), json, cbor, gzipJson, gzipCbor, jsonCpu / 1000, cborCpu / 1000);
+
+            assertThat(json.encoding()).isNull();
+            assertThat(cbor.bytes()).isLessThan(json.bytes());
+            assertThat(json.bytes()).isGreaterThan(COMPRESSION_THRESHOLD);
+            assertThat(gzipJson.encoding()).isEqualTo("gzip");
+            assertThat(gzipJson.bytes()).isLessThan(json.bytes() / 2);
+            if (cbor.bytes() > COMPRESSION_THRESHOLD) {
+                assertThat(gzipCbor.encoding()).isEqualTo("gzip");
+                assertThat(gzipCbor.bytes()).isLessThan(cbor.bytes());
+            }
+        }
+    }
+
+    private void seedConversation(UserPostgres reader, UserPostgres partner) {
+        String conversationKey = ChatMessage.conversationKey(reader.getId(), partner.getId());
+        LocalDateTime sent = LocalDateTime.now().minusDays(1);
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            boolean fromReader = i % 2 == 0;
+            messages.add(ChatMessage.builder()
+                    .firstUser(fromReader ? reader : partner)
+                    .secondUser(fromReader ? partner : reader)
+                    .sent(sent.plusSeconds(i))
+                    .message("Czy ksiazka jest jeszcze dostepna? Moge odebrac osobiscie w przyszlym tygodniu, wiadomosc " + i)
+                    .conversationKey(conversationKey)
+                    .build());
+        }
+        chatMessageRepository.saveAll(messages);
+    }
+
+    private Long seedReviewedBook() {
+        Long bookId = bookService.createBook(
+                new BookController.CreateBookRequest("Lalka", "Bolesław Prus", "good", 30.0, null), "piotr_seller").getId();
+        for (int i = 0; i < REVIEWS; i++) {
+            reviewService.createReview(new ReviewController.CreateReviewRequest(bookId, 1 + i % 5,
+                    "Solidne wydanie, szybka wysylka, sprzedawca godny polecenia, recenzja " + i), "janek_bookworm");
+        }
+        return bookId;
+    }
+
+    private void authenticate(String login) {
+        UserDetails user = userService.loadUserByUsername(login);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    private static ServletWebRequest webRequest() {
+        return new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+    }
+
+    private ObjectMapper mapperFor(MediaType mediaType) {
+        return handlerAdapter.getMessageConverters().stream()
+                .filter(AbstractJackson2HttpMessageConverter.class::isInstance)
+                .map(AbstractJackson2HttpMessageConverter.class::cast)
+                .filter(converter -> converter.getSupportedMediaTypes().contains(mediaType))
+                .findFirst()
+                .orElseThrow()
+                .getObjectMapper();
+    }
+
+    private static long cpuNanosPerWrite(ObjectMapper mapper, Object payload) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < ROUNDS; i++) {
+            mapper.writeValueAsBytes(payload);
+        }
+        long started = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            mapper.writeValueAsBytes(payload);
+        }
+        return (threads.getCurrentThreadCpuTime() - started) / ROUNDS;
+    }
+
+    private Wire fetch(String path, String token, String accept, String acceptEncoding) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Accept", accept)
+                .header("Accept-Encoding", acceptEncoding)
+                .header("Authorization", "Bearer " + token)
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return new Wire(response.body().length, response.headers().firstValue("Content-Encoding").orElse(null));
+    }
+
+    private record Endpoint(String name, String path, Callable<Object> payload) {
+    }
+
+    private record Wire(int bytes, String encoding) {
+
+        @Override
+        public String toString() {
+            return bytes + " B";
+        }
+    }
+}
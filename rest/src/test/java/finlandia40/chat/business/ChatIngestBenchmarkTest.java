@@ -0,0 +1,79 @@
+package finlandia40.chat.business;
+
+import finlandia40.PostgresIntegrationTest;
+import finlandia40.chat.dto.MessageDto;
+import finlandia40.user.business.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Accept throughput and latency with many senders at once; accept only holds the ingest lock for id assignment and
+ * enqueueing, so its p99 must stay far below the writer's batch time.
+ */
+@Tag("benchmark")
+class ChatIngestBenchmarkTest extends PostgresIntegrationTest {
+
+    private static final int SENDERS = 16;
+    private static final int MESSAGES_PER_SENDER = 500;
+
+    @Autowired
+    private ChatIngest chatIngest;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void acceptsConcurrentMessages() throws Exception {
+        Long receiverId = userService.loadUserByLogin("zofia_reads").getId();
+        double busyBefore = meterRegistry.counter("chat.ingest.rejected", "reason", "busy").count();
+
+        ExecutorService executor = Executors.newFixedThreadPool(SENDERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Long>>> senders = new ArrayList<>();
+        for (int s = 0; s < SENDERS; s++) {
+            String client = "bench-" + s + "-";
+            senders.add(executor.submit(() -> {
+                start.await();
+                List<Long> latencies = new ArrayList<>(MESSAGES_PER_SENDER);
+                for (int i = 0; i < MESSAGES_PER_SENDER; i++) {
+                    MessageDto dto = MessageDto.builder().receiverId(receiverId).content("message " + i)
+                            .clientMessageId(client + i).build();
+                    long started = System.nanoTime();
+                    chatIngest.accept(dto, "janek_bookworm");
+                    latencies.add(System.nanoTime() - started);
+                }
+                return latencies;
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        List<Long> latencies = new ArrayList<>();
+        for (Future<List<Long>> sender : senders) {
+            latencies.addAll(sender.get(120, TimeUnit.SECONDS));
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        executor.shutdown();
+
+        assertThat(meterRegistry.counter("chat.ingest.rejected", "reason", "busy").count()).isEqualTo(busyBefore);
+        Collections.sort(latencies);
+        System.out.printf("chat ingest: %d messages/s, accept p50 %d us, p99 %d us%n",
+                latencies.size() * 1000L / elapsedMillis,
+                latencies.get(latencies.size() / 2) / 1000, latencies.get(latencies.size() * 99 / 100) / 1000);
+    }
+}
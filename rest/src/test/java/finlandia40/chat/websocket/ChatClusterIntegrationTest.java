@@ -0,0 +1,254 @@
+package finlandia40.chat.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import finlandia40.RestApplication;
+import finlandia40.TestcontainersConfiguration;
+import finlandia40.book.business.BookService;
+import finlandia40.book.search.BookSearchIndex;
+import finlandia40.book.web.BookController;
+import finlandia40.chat.business.ChatIngest;
+import finlandia40.chat.business.ChatService;
+import finlandia40.chat.data.ChatStreamRow;
+import finlandia40.chat.dto.MessageDto;
+import finlandia40.security.JwtService;
+import finlandia40.user.business.UserService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two nodes in the chat-cluster profile on one database: a message accepted on one node reaches a subscriber connected
+ * to the other, presence changes travel between the nodes without a query per send, a client that reconnects to the
+ * other node resumes exactly where it stopped, and catalog writes on one node show up in the other node's search index.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ChatClusterIntegrationTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(TestcontainersConfiguration.POSTGRES_IMAGE);
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        // the first node creates and seeds the schema, the second one joins it as it is
+        nodeA = startNode();
+        nodeB = startNode("--spring.jpa.hibernate.ddl-auto=none", "--spring.sql.init.mode=never");
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode(String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                "--spring.datasource.username=" + postgres.getUsername(),
+                "--spring.datasource.password=" + postgres.getPassword()));
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(RestApplication.class)
+                .profiles("test", "chat-cluster")
+                .run(args.toArray(String[]::new));
+    }
+
+    @Test
+    void messageAcceptedOnOneNodeReachesSubscriberOnTheOther() throws Exception {
+        Long receiverId = nodeB.getBean(UserService.class).loadUserByLogin("zofia_reads").getId();
+        ClusterPresence presenceOnA = nodeA.getBean(ClusterPresence.class);
+        BlockingQueue<MessageDto> received = new LinkedBlockingQueue<>();
+
+        StompSession session = connect(nodeB, "zofia_reads");
+        session.subscribe(ChatFanout.destination("messages", receiverId), new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return MessageDto.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((MessageDto) payload);
+            }
+        });
+        await(() -> !presenceOnA.remoteNodes(receiverId).isEmpty());
+
+        nodeA.getBean(ChatIngest.class).accept(MessageDto.builder()
+                .receiverId(receiverId)
+                .content("across nodes")
+                .clientMessageId("cluster-1")
+                .build(), "janek_bookworm");
+
+        MessageDto message = received.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        assertThat(message).isNotNull();
+        assertThat(message.content()).isEqualTo("across nodes");
+        assertThat(message.id()).isNotNull();
+
+        session.disconnect();
+        await(() -> presenceOnA.remoteNodes(receiverId).isEmpty());
+    }
+
+    @Test
+    void reconnectingToTheOtherNodeResumesWithoutGapsOrDuplicates() throws Exception {
+        Long receiverId = nodeA.getBean(UserService.class).loadUserByLogin("zofia_reads").getId();
+        ClusterPresence presenceOnA = nodeA.getBean(ClusterPresence.class);
+        ClusterPresence presenceOnB = nodeB.getBean(ClusterPresence.class);
+        ChatService chatService = nodeA.getBean(ChatService.class);
+        String destination = ChatFanout.destination("messages", receiverId);
+
+        // both nodes number messages for the receiver: ids come from separate blocks, stream numbers do not
+        BlockingQueue<Frame> onB = new LinkedBlockingQueue<>();
+        StompSession first = connect(nodeB, "zofia_reads");
+        StompHeaders subscribe = new StompHeaders();
+        subscribe.setDestination(destination);
+        first.subscribe(subscribe, collector(onB));
+        await(() -> !presenceOnA.remoteNodes(receiverId).isEmpty());
+        send(nodeA, receiverId, "live from A");
+        send(nodeB, receiverId, "live from B");
+        send(nodeA, receiverId, "live again from A");
+        List<Frame> live = take(onB, 3);
+        assertThat(live.get(0).seq()).isLessThan(live.get(1).seq());
+        assertThat(live.get(1).seq()).isLessThan(live.get(2).seq());
+        long lastSeen = live.get(2).seq();
+
+        first.disconnect();
+        await(() -> presenceOnA.remoteNodes(receiverId).isEmpty());
+        send(nodeB, receiverId, "missed on B");
+        send(nodeA, receiverId, "missed on A");
+        send(nodeB, receiverId, "missed on B again");
+        await(() -> chatService.getStreamAfter(receiverId, null, lastSeen, 10).size() == 3);
+        List<Long> missed = chatService.getStreamAfter(receiverId, null, lastSeen, 10).stream().map(ChatStreamRow::getSeq).toList();
+
+        BlockingQueue<Frame> onA = new LinkedBlockingQueue<>();
+        StompSession second = connect(nodeA, "zofia_reads");
+        StompHeaders resume = new StompHeaders();
+        resume.setDestination(destination);
+        resume.add(ChatResume.LAST_SEEN_HEADER, Long.toString(lastSeen));
+        second.subscribe(resume, collector(onA));
+        List<Frame> replayed = take(onA, 3);
+        assertThat(replayed.stream().map(Frame::seq).toList()).isEqualTo(missed);
+        assertThat(replayed.stream().map(frame -> frame.message().content()).toList())
+                .containsExactlyInAnyOrder("missed on B", "missed on A", "missed on B again");
+        assertThat(replayed.stream().map(frame -> frame.headers().getFirst(ChatResume.REPLAY_HEADER)).toList())
+                .containsOnly("true");
+
+        await(() -> !presenceOnB.remoteNodes(receiverId).isEmpty());
+        send(nodeB, receiverId, "live after resume");
+        Frame next = take(onA, 1).get(0);
+        assertThat(next.message().content()).isEqualTo("live after resume");
+        assertThat(next.seq()).isGreaterThan(missed.get(2));
+        assertThat(onA.poll(1, TimeUnit.SECONDS)).isNull();
+
+        second.disconnect();
+        await(() -> presenceOnB.remoteNodes(receiverId).isEmpty());
+    }
+
+    @Test
+    void catalogWritesOnOneNodeReachTheSearchIndexOfTheOther() throws Exception {
+        BookSearchIndex indexOnB = nodeB.getBean(BookSearchIndex.class);
+        BookService booksOnA = nodeA.getBean(BookService.class);
+        String title = "Przedwiosnie " + System.nanoTime();
+
+        Long bookId = booksOnA.createBook(
+                new BookController.CreateBookRequest(title, "Stefan Żeromski", "good", 25.0, null), "piotr_seller").getId();
+        await(() -> indexOnB.search(title, null).stream().anyMatch(hit -> hit.id().equals(bookId)));
+
+        booksOnA.buyBook(bookId, "zofia_reads");
+        await(() -> indexOnB.search(title, null).stream().noneMatch(hit -> hit.id().equals(bookId)));
+    }
+
+    private static void send(ConfigurableApplicationContext node, Long receiverId, String content) {
+        node.getBean(ChatIngest.class).accept(MessageDto.builder()
+                .receiverId(receiverId)
+                .content(content)
+                .clientMessageId(content)
+                .build(), "janek_bookworm");
+    }
+
+    private static StompFrameHandler collector(BlockingQueue<Frame> frames) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return MessageDto.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add(new Frame(headers, (MessageDto) payload));
+            }
+        };
+    }
+
+    private static List<Frame> take(BlockingQueue<Frame> frames, int count) throws InterruptedException {
+        List<Frame> taken = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Frame frame = frames.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            assertThat(frame).isNotNull();
+            taken.add(frame);
+        }
+        return taken;
+    }
+
+    private static StompSession connect(ConfigurableApplicationContext node, String login) throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(node.getBean(ObjectMapper.class));
+        client.setMessageConverter(converter);
+
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + node.getBean(JwtService.class).generateToken(login));
+        String url = "http://localhost:" + node.getEnvironment().getProperty("local.server.port") + "/chat-socket";
+        return client.connectAsync(url, new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {
+        }).get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime() < deadline).isTrue();
+            Thread.sleep(50);
+        }
+    }
+
+    private record Frame(StompHeaders headers, MessageDto message) {
+
+        long seq() {
+            return Long.parseLong(headers.getFirst(ChatFanout.MESSAGE_SEQ_HEADER));
+        }
+    }
+}
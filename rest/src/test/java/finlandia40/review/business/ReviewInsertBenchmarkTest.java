@@ -0,0 +1,75 @@
+package finlandia40.review.business;
+
+import finlandia40.PostgresIntegrationTest;
+import finlandia40.book.business.BookService;
+import finlandia40.book.web.BookController;
+import finlandia40.review.web.ReviewController;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Adding a review must cost the same whether the offer has no reviews or a thousand.
+ */
+@Tag("benchmark")
+class ReviewInsertBenchmarkTest extends PostgresIntegrationTest {
+
+    private static final int REVIEWS = 1000;
+    private static final int SAMPLE = 100;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void insertCostDoesNotGrowWithExistingReviews() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Long bookId = bookService.createBook(
+                new BookController.CreateBookRequest("Pan Tadeusz", "Adam Mickiewicz", "good", 35.0, null), "piotr_seller").getId();
+
+        List<Long> first = new ArrayList<>();
+        List<Long> last = new ArrayList<>();
+        long firstStatements = -1;
+        for (int i = 0; i < REVIEWS; i++) {
+            statistics.clear();
+            long started = System.nanoTime();
+            reviewService.createReview(new ReviewController.CreateReviewRequest(bookId, 1 + i % 5, "review " + i), "janek_bookworm");
+            long elapsed = System.nanoTime() - started;
+
+            assertThat(statistics.getEntityLoadCount()).isZero();
+            assertThat(statistics.getCollectionLoadCount()).isZero();
+            if (i == 0) {
+                firstStatements = statistics.getPrepareStatementCount();
+            } else {
+                assertThat(statistics.getPrepareStatementCount()).isEqualTo(firstStatements);
+            }
+            if (i < SAMPLE) {
+                first.add(elapsed);
+            } else if (i >= REVIEWS - SAMPLE) {
+                last.add(elapsed);
+            }
+        }
+
+        System.out.printf("review insert: %d statements, first %d p50 %d us, last %d p50 %d us%n", firstStatements,
+                SAMPLE, median(first) / 1000, SAMPLE, median(last) / 1000);
+    }
+
+    private static long median(List<Long> latencies) {
+        Collections.sort(latencies);
+        return latencies.get(latencies.size() / 2);
+    }
+}